@@ -0,0 +1,38 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.repository.SecurityRepository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Builds the entities the benchmarks trade with. Brokers and shareholders are given enough credit and positions that no
+ * benchmark is ever rejected for lack of them, so every invocation takes the same path.
+ */
+final class Books {
+    static final LocalDateTime ENTRY_TIME = LocalDateTime.of(2024, 1, 1, 9, 0);
+    static final int MID_PRICE = 100_000;
+
+    private Books() {
+    }
+
+    static Broker broker() {
+        return Broker.builder().brokerId(1).name("benchmark").credit(Long.MAX_VALUE / 4).build();
+    }
+
+    // adds the security to a repository first, so its positions are kept by id as in the engine
+    static Shareholder shareholder(Security security) {
+        if (security.getId() == Security.NO_ID)
+            new SecurityRepository().addSecurity(security);
+        Shareholder shareholder = Shareholder.builder().shareholderId(1).name("benchmark").build();
+        shareholder.incPosition(security, Integer.MAX_VALUE / 2);
+        return shareholder;
+    }
+
+    static Order order(long orderId, Security security, Side side, int quantity, int price, Broker broker,
+                       Shareholder shareholder, int peakSize) {
+        if (peakSize > 0)
+            return new IcebergOrder(orderId, security, side, quantity, price, broker, shareholder, ENTRY_TIME, peakSize);
+        return new Order(orderId, security, side, quantity, price, broker, shareholder, ENTRY_TIME);
+    }
+}
@@ -0,0 +1,39 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.messaging.EventPublisher;
+import ir.ramtung.tinyme.messaging.event.Event;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An {@link EventPublisher} without JMS that only counts what it is given, per event type, so harnesses can drive
+ * {@link ir.ramtung.tinyme.domain.service.OrderHandler} directly.
+ */
+class CountingEventPublisher extends EventPublisher {
+    private final Map<Class<?>, long[]> countByType = new LinkedHashMap<>();
+    private long published;
+
+    CountingEventPublisher() {
+        super(null);
+    }
+
+    @Override
+    public void publish(Event event) {
+        published++;
+        long[] count = countByType.get(event.getClass());
+        if (count == null)
+            countByType.put(event.getClass(), count = new long[1]);
+        count[0]++;
+    }
+
+    long getPublished() {
+        return published;
+    }
+
+    Map<String, Long> getCountByType() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        countByType.forEach((type, count) -> counts.put(type.getSimpleName(), count[0]));
+        return counts;
+    }
+}
@@ -0,0 +1,266 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.TinyMeApplication;
+import ir.ramtung.tinyme.domain.entity.Broker;
+import ir.ramtung.tinyme.domain.entity.Security;
+import ir.ramtung.tinyme.domain.entity.Shareholder;
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.messaging.event.*;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.repository.BrokerRepository;
+import ir.ramtung.tinyme.repository.SecurityRepository;
+import ir.ramtung.tinyme.repository.ShareholderRepository;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures the full messaging round trip: the application is started with an embedded in-VM Artemis broker, a client
+ * floods the request queue with {@link EnterOrderRq} and {@link DeleteOrderRq} messages and consumes the response
+ * queue, and the time from sending each request to receiving its last event is recorded. At most {@code window}
+ * requests are outstanding, that is sent but without any event yet.
+ * <p>
+ * Run with {@code mvn -Pbenchmark verify -Dbenchmark.main=ir.ramtung.tinyme.benchmark.JmsRoundTripBenchmark
+ * -Dbenchmark.args="concurrency=4 codec=binary"}. Harness settings are {@code key=value} arguments, see
+ * {@link #DEFAULTS}; {@code concurrency} sets the request listener concurrency and {@code codec} the
+ * {@code messageCodec}. Arguments starting with {@code --} are passed to the application, e.g.
+ * {@code --matchingShards=4} or {@code --asyncPublishing=true}. No external broker is needed.
+ * <p>
+ * Several listener threads must not run {@link ir.ramtung.tinyme.domain.service.OrderHandler} on the same securities,
+ * so a {@code concurrency} above one needs matching shards or the request pipeline: without either of them,
+ * {@code --matchingShards} is set to the concurrency, and an explicit {@code --matchingShards=0} is rejected.
+ * Sharded matching without the pipeline is fed by the single consumer of
+ * {@link ir.ramtung.tinyme.messaging.BatchRequestConsumer} instead of the listeners, so there the concurrency only
+ * sets the number of shards.
+ */
+public class JmsRoundTripBenchmark {
+    static final Map<String, String> DEFAULTS = Map.of(
+            "requests", "200000",
+            "warmup", "50000",
+            "window", "1000",
+            "securities", "10",
+            "cancel", "0.3",
+            "spread", "20",
+            "seed", "42",
+            "concurrency", "1",
+            "codec", "json");
+    private static final int MID_PRICE = 10_000;
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(2024, 1, 1, 9, 0);
+    private static final int RECENT_ORDERS = 256;
+
+    private final Map<String, String> settings;
+    private final Random random;
+    private final String[] isins;
+    private final int total;
+    private final AtomicLongArray sentAt;
+    private final AtomicLongArray lastEventAt;
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Semaphore window;
+    private final long[] recentOrders = new long[RECENT_ORDERS];
+    private final String[] recentIsins = new String[RECENT_ORDERS];
+    private final Side[] recentSides = new Side[RECENT_ORDERS];
+    private int recentCount;
+
+    JmsRoundTripBenchmark(Map<String, String> settings) {
+        this.settings = settings;
+        random = new Random(Long.parseLong(settings.get("seed")));
+        isins = new String[Integer.parseInt(settings.get("securities"))];
+        for (int i = 0; i < isins.length; i++)
+            isins[i] = String.format("JMS%04d", i);
+        total = Integer.parseInt(settings.get("warmup")) + Integer.parseInt(settings.get("requests"));
+        sentAt = new AtomicLongArray(total + 1);
+        lastEventAt = new AtomicLongArray(total + 1);
+        window = new Semaphore(Integer.parseInt(settings.get("window")));
+    }
+
+    private void populate(ConfigurableApplicationContext context) {
+        SecurityRepository securityRepository = context.getBean(SecurityRepository.class);
+        BrokerRepository brokerRepository = context.getBean(BrokerRepository.class);
+        ShareholderRepository shareholderRepository = context.getBean(ShareholderRepository.class);
+        Shareholder shareholder = Shareholder.builder().shareholderId(1).name("benchmark").build();
+        for (String isin : isins) {
+            Security security = Security.builder().isin(isin).price(MID_PRICE).build();
+            securityRepository.addSecurity(security);
+            shareholder.incPosition(security, Integer.MAX_VALUE / 2);
+        }
+        shareholderRepository.addShareholder(shareholder);
+        brokerRepository.addBroker(Broker.builder().brokerId(1).name("benchmark").credit(Long.MAX_VALUE / 4).build());
+    }
+
+    private static long requestIdOf(Object event) {
+        if (event instanceof OrderAcceptedEvent accepted)
+            return accepted.getRequestId();
+        if (event instanceof OrderExecutedEvent executed)
+            return executed.getRequestId();
+        if (event instanceof OrderDeletedEvent deleted)
+            return deleted.getRequestId();
+        if (event instanceof OrderUpdatedEvent updated)
+            return updated.getRequestId();
+        if (event instanceof OrderActivatedEvent activated)
+            return activated.getRequestId();
+        if (event instanceof OrderRejectedEvent rejectedEvent)
+            return rejectedEvent.getRequestId();
+        return 0;
+    }
+
+    private void onEvent(Object event) {
+        long now = System.nanoTime();
+        events.incrementAndGet();
+        if (event instanceof OrderRejectedEvent)
+            rejected.incrementAndGet();
+        long requestId = requestIdOf(event);
+        if (requestId <= 0 || requestId > total)
+            return;
+        // the first event of a request closes its slot in the window; later ones only move its completion time
+        if (lastEventAt.getAndSet((int) requestId, now) == 0)
+            window.release();
+    }
+
+    // a new order priced around the mid, or, with the cancel share, the deletion of a recent one; enter and delete
+    // requests have separate listeners that may overtake each other, so only orders already answered are deleted
+    private Object nextRequest(int requestId) {
+        if (recentCount > 0 && random.nextDouble() < Double.parseDouble(settings.get("cancel"))) {
+            int recent = random.nextInt(Math.min(recentCount, RECENT_ORDERS));
+            if (lastEventAt.get((int) recentOrders[recent]) != 0)
+                return new DeleteOrderRq(requestId, recentIsins[recent], recentSides[recent], recentOrders[recent]);
+        }
+        String isin = isins[random.nextInt(isins.length)];
+        Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+        int price = MID_PRICE + (int) Math.round(random.nextGaussian() * Double.parseDouble(settings.get("spread")));
+        int slot = recentCount++ % RECENT_ORDERS;
+        recentOrders[slot] = requestId;
+        recentIsins[slot] = isin;
+        recentSides[slot] = side;
+        return EnterOrderRq.createNewOrderRq(requestId, isin, requestId, ENTRY_TIME, side, 10 * (1 + random.nextInt(100)),
+                price, 1, 1, 0);
+    }
+
+    private void send(Session session, MessageProducer producer, MessageConverter converter, int from, int to)
+            throws JMSException, InterruptedException {
+        for (int requestId = from; requestId <= to; requestId++) {
+            Object request = nextRequest(requestId);
+            Message message = converter.toMessage(request, session);
+            window.acquire();
+            sentAt.set(requestId, System.nanoTime());
+            producer.send(message);
+        }
+    }
+
+    // waits for every request to get its first event, then for a quiet spell in which no further events arrive
+    private long drain(int windowSize) throws InterruptedException {
+        if (!window.tryAcquire(windowSize, 60, TimeUnit.SECONDS))
+            throw new IllegalStateException("Requests still unanswered after 60 s");
+        window.release(windowSize);
+        long seen;
+        do {
+            seen = events.get();
+            Thread.sleep(100);
+        } while (events.get() != seen);
+        long last = 0;
+        for (int i = 1; i <= total; i++)
+            last = Math.max(last, lastEventAt.get(i));
+        return last;
+    }
+
+    void run(List<String> applicationArgs) throws Exception {
+        int warmup = Integer.parseInt(settings.get("warmup"));
+        int windowSize = Integer.parseInt(settings.get("window"));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TinyMeApplication.class)
+                .run(applicationArgs.toArray(String[]::new))) {
+            populate(context);
+            MessageConverter converter = context.getBean(MessageConverter.class);
+            ConnectionFactory connectionFactory = context.getBean(ConnectionFactory.class);
+            String requestQueue = context.getEnvironment().getProperty("requestQueue");
+            String responseQueue = context.getEnvironment().getProperty("responseQueue");
+            try (Connection connection = connectionFactory.createConnection()) {
+                Session listening = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                listening.createConsumer(listening.createQueue(responseQueue)).setMessageListener(message -> {
+                    try {
+                        onEvent(converter.fromMessage(message));
+                    } catch (JMSException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                });
+                connection.start();
+                Session sending = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                MessageProducer producer = sending.createProducer(sending.createQueue(requestQueue));
+
+                send(sending, producer, converter, 1, warmup);
+                drain(windowSize);
+                long eventsBefore = events.get();
+                long start = System.nanoTime();
+                send(sending, producer, converter, warmup + 1, total);
+                long sent = System.nanoTime();
+                long end = drain(windowSize);
+                report(warmup + 1, start, sent, end, events.get() - eventsBefore);
+            }
+        }
+    }
+
+    private void report(int firstMeasured, long start, long sent, long end, long measuredEvents) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        for (int i = firstMeasured; i <= total; i++)
+            latencies.record(lastEventAt.get(i) - sentAt.get(i));
+        long requests = latencies.getTotalCount();
+        System.out.println("settings   " + settings);
+        System.out.printf("requests   %d sent in %.3f s, all answered in %.3f s: %.0f req/s, %.0f events/s%n",
+                requests, (sent - start) / 1e9, (end - start) / 1e9, requests / ((end - start) / 1e9),
+                measuredEvents / ((end - start) / 1e9));
+        System.out.printf("events     %d (%.2f per request), %d rejections in the whole run%n", measuredEvents,
+                (double) measuredEvents / requests, rejected.get());
+        LatencyHistogram.printHeader("latency");
+        latencies.print("rq->last");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new TreeMap<>(DEFAULTS);
+        Map<String, String> application = new TreeMap<>();
+        for (String arg : args) {
+            String[] setting = arg.replaceFirst("^--", "").split("=", 2);
+            if (setting.length != 2 || (!arg.startsWith("--") && !DEFAULTS.containsKey(setting[0])))
+                throw new IllegalArgumentException("Unknown setting " + arg + ", expected one of " + DEFAULTS.keySet()
+                        + " or --<application property>=<value>");
+            (arg.startsWith("--") ? application : settings).put(setting[0], setting[1]);
+        }
+        int concurrency = Integer.parseInt(settings.get("concurrency"));
+        if (concurrency > 1 && !Boolean.parseBoolean(application.get("requestPipeline"))) {
+            String shards = application.putIfAbsent("matchingShards", String.valueOf(concurrency));
+            if (shards != null && Integer.parseInt(shards) <= 0)
+                throw new IllegalArgumentException("concurrency=" + concurrency
+                        + " needs --matchingShards above zero or --requestPipeline=true");
+        }
+        Map<String, String> properties = new TreeMap<>(Map.of(
+                // the test profile leaves out DataLoader, so the benchmark starts from the state it creates itself
+                "spring.profiles.active", "test",
+                "spring.artemis.mode", "embedded",
+                "spring.artemis.embedded.queues", "RQ,RS",
+                "spring.jms.listener.min-concurrency", settings.get("concurrency"),
+                "spring.jms.listener.max-concurrency", settings.get("concurrency"),
+                "messageCodec", settings.get("codec"),
+                "logging.level.root", "WARN",
+                "spring.main.banner-mode", "off"));
+        properties.putAll(application);
+        List<String> applicationArgs = new ArrayList<>();
+        properties.forEach((name, value) -> applicationArgs.add("--" + name + "=" + value));
+        new JmsRoundTripBenchmark(settings).run(applicationArgs);
+    }
+}
@@ -0,0 +1,74 @@
+package ir.ramtung.tinyme.benchmark;
+
+/**
+ * A log-linear histogram of non-negative values in the style of HdrHistogram. Each power of two is split into 64
+ * buckets, so every recorded value is reported to within 1/64 of itself however large it is. Recording is an array
+ * increment and never allocates.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 2) * HALF];
+    private long totalCount;
+    private long maxValue;
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    // the largest value that lands in the bucket, which is what percentiles report
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / HALF - 1;
+        long subBucket = index - (long) shift * HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    void record(long value) {
+        counts[indexOf(Math.max(0, value))]++;
+        totalCount++;
+        if (value > maxValue)
+            maxValue = value;
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long valueAtPercentile(double percentile) {
+        if (totalCount == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highestValueAt(i), maxValue);
+        }
+        return maxValue;
+    }
+
+    static void printHeader(String name) {
+        System.out.printf("%-8s %10s %9s %9s %9s %9s %9s %9s  (us)%n", name, "count", "p50", "p90", "p99", "p99.9",
+                "p99.99", "max");
+    }
+
+    void print(String name) {
+        System.out.printf("%-8s %10d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, totalCount,
+                valueAtPercentile(50) / 1e3, valueAtPercentile(90) / 1e3, valueAtPercentile(99) / 1e3,
+                valueAtPercentile(99.9) / 1e3, valueAtPercentile(99.99) / 1e3, maxValue / 1e3);
+    }
+}
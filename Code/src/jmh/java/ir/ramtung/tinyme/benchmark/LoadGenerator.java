@@ -0,0 +1,233 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.repository.BrokerRepository;
+import ir.ramtung.tinyme.repository.SecurityRepository;
+import ir.ramtung.tinyme.repository.ShareholderRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Drives {@link OrderHandler} directly with a synthetic order flow, without JMS, and reports throughput and the
+ * latency of each request from an HDR-style histogram. Use it to size hardware and to catch regressions anywhere on
+ * the request path, which the JMH benchmarks only cover piece by piece.
+ * <p>
+ * Run with {@code mvn -Pbenchmark verify -Dbenchmark.main=ir.ramtung.tinyme.benchmark.LoadGenerator
+ * -Dbenchmark.args="requests=1000000 securities=20"}. Every setting is a {@code key=value} argument; see
+ * {@link #DEFAULTS}. {@code new}, {@code cancel} and {@code amend} are the shares of each request type, and
+ * {@code iceberg} and {@code stopLimit} the shares of new orders of each kind. Limit prices are spread normally around
+ * a fixed mid price with a standard deviation of {@code spread} ticks, so about half of the new orders cross.
+ */
+public class LoadGenerator {
+    static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("requests", "1000000"),
+            Map.entry("warmup", "200000"),
+            Map.entry("securities", "10"),
+            Map.entry("brokers", "10"),
+            Map.entry("shareholders", "100"),
+            Map.entry("new", "0.6"),
+            Map.entry("cancel", "0.25"),
+            Map.entry("amend", "0.15"),
+            Map.entry("iceberg", "0.1"),
+            Map.entry("stopLimit", "0.05"),
+            Map.entry("spread", "20"),
+            Map.entry("seed", "42"));
+    private static final int MID_PRICE = 10_000;
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+    private enum Kind {NEW, CANCEL, AMEND}
+
+    private record LiveOrder(long orderId, Side side, long brokerId, long shareholderId, int peakSize,
+                             boolean stopLimit) {
+    }
+
+    private final Map<String, String> settings;
+    private final Random random;
+    private final SecurityRepository securityRepository = new SecurityRepository();
+    private final CountingEventPublisher eventPublisher = new CountingEventPublisher();
+    private final OrderHandler orderHandler;
+    private final String[] isins;
+    private final List<List<LiveOrder>> liveOrders = new ArrayList<>();
+    private final Map<Kind, LatencyHistogram> latencies = new HashMap<>();
+    private final int brokers;
+    private final int shareholders;
+    private final double newShare;
+    private final double cancelShare;
+    private final double amendShare;
+    private final double icebergShare;
+    private final double stopLimitShare;
+    private final double spread;
+    private long nextId = 1;
+
+    LoadGenerator(Map<String, String> settings) {
+        this.settings = settings;
+        this.random = new Random(number("seed"));
+        brokers = (int) number("brokers");
+        shareholders = (int) number("shareholders");
+        newShare = share("new");
+        cancelShare = share("cancel");
+        amendShare = share("amend");
+        icebergShare = share("iceberg");
+        stopLimitShare = share("stopLimit");
+        spread = share("spread");
+        BrokerRepository brokerRepository = new BrokerRepository();
+        ShareholderRepository shareholderRepository = new ShareholderRepository();
+        isins = new String[(int) number("securities")];
+        List<Security> securities = new ArrayList<>();
+        for (int i = 0; i < isins.length; i++) {
+            isins[i] = String.format("LOAD%04d", i);
+            Security security = Security.builder().isin(isins[i]).price(MID_PRICE).build();
+            securityRepository.addSecurity(security);
+            securities.add(security);
+            liveOrders.add(new ArrayList<>());
+        }
+        for (long brokerId = 1; brokerId <= brokers; brokerId++)
+            brokerRepository.addBroker(Broker.builder().brokerId(brokerId).name("broker" + brokerId)
+                    .credit(Long.MAX_VALUE / 4).build());
+        for (long shareholderId = 1; shareholderId <= shareholders; shareholderId++) {
+            Shareholder shareholder = Shareholder.builder().shareholderId(shareholderId).name("holder" + shareholderId)
+                    .build();
+            for (Security security : securities)
+                shareholder.incPosition(security, Integer.MAX_VALUE / 2);
+            shareholderRepository.addShareholder(shareholder);
+        }
+        for (Kind kind : Kind.values())
+            latencies.put(kind, new LatencyHistogram());
+        orderHandler = new OrderHandler(securityRepository, brokerRepository, shareholderRepository, eventPublisher,
+                new Matcher());
+    }
+
+    private long number(String name) {
+        return Long.parseLong(settings.get(name));
+    }
+
+    private double share(String name) {
+        return Double.parseDouble(settings.get(name));
+    }
+
+    private int limitPrice() {
+        return Math.max(1, MID_PRICE + (int) Math.round(random.nextGaussian() * spread));
+    }
+
+    private int quantity() {
+        return 10 * (1 + random.nextInt(100));
+    }
+
+    private boolean isLive(int security, LiveOrder order) {
+        Security resolved = securityRepository.findSecurityByIsin(isins[security]);
+        return resolved.getOrderBook().findByOrderId(order.side(), order.orderId()) != null
+                || resolved.getStopLimitOrderBook().findByOrderId(order.side(), order.orderId()) != null;
+    }
+
+    // a resting order of the security, dropping the ones that have been filled since they were entered
+    private LiveOrder pickLive(int security, boolean amendable) {
+        List<LiveOrder> orders = liveOrders.get(security);
+        for (int attempt = 0; attempt < 4 && !orders.isEmpty(); attempt++) {
+            int index = random.nextInt(orders.size());
+            LiveOrder order = orders.get(index);
+            if (!isLive(security, order)) {
+                orders.set(index, orders.get(orders.size() - 1));
+                orders.remove(orders.size() - 1);
+            } else if (!amendable || !order.stopLimit()) {
+                return order;
+            }
+        }
+        return null;
+    }
+
+    private Object newOrder(int security) {
+        long orderId = nextId++;
+        Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+        long brokerId = 1 + random.nextInt(brokers);
+        long shareholderId = 1 + random.nextInt(shareholders);
+        int quantity = quantity();
+        double kind = random.nextDouble();
+        if (kind < stopLimitShare) {
+            int distance = 1 + (int) Math.abs(Math.round(random.nextGaussian() * spread));
+            int stopPrice = side == Side.BUY ? MID_PRICE + distance : MID_PRICE - distance;
+            liveOrders.get(security).add(new LiveOrder(orderId, side, brokerId, shareholderId, 0, true));
+            return EnterOrderRq.createNewStopLimitOrderRq(orderId, isins[security], orderId, ENTRY_TIME, side,
+                    quantity, stopPrice, brokerId, shareholderId, 0, stopPrice);
+        }
+        int peakSize = kind < stopLimitShare + icebergShare ? quantity / 10 : 0;
+        liveOrders.get(security).add(new LiveOrder(orderId, side, brokerId, shareholderId, peakSize, false));
+        return EnterOrderRq.createNewOrderRq(orderId, isins[security], orderId, ENTRY_TIME, side, quantity,
+                limitPrice(), brokerId, shareholderId, peakSize);
+    }
+
+    private Kind nextKind() {
+        double draw = random.nextDouble() * (newShare + cancelShare + amendShare);
+        if (draw < newShare)
+            return Kind.NEW;
+        return draw < newShare + cancelShare ? Kind.CANCEL : Kind.AMEND;
+    }
+
+    private void handleNext(boolean measured) {
+        int security = random.nextInt(isins.length);
+        Kind kind = nextKind();
+        LiveOrder live = kind == Kind.NEW ? null : pickLive(security, kind == Kind.AMEND);
+        if (live == null)
+            kind = Kind.NEW;
+        Object request = switch (kind) {
+            case NEW -> newOrder(security);
+            case CANCEL -> new DeleteOrderRq(nextId++, isins[security], live.side(), live.orderId());
+            case AMEND -> EnterOrderRq.createUpdateOrderRq(nextId++, isins[security], live.orderId(), ENTRY_TIME,
+                    live.side(), quantity(), limitPrice(), live.brokerId(), live.shareholderId(), live.peakSize());
+        };
+
+        long start = System.nanoTime();
+        if (request instanceof DeleteOrderRq deleteOrderRq)
+            orderHandler.handleDeleteOrder(deleteOrderRq);
+        else
+            orderHandler.handleEnterOrder((EnterOrderRq) request);
+        long latency = System.nanoTime() - start;
+        if (measured)
+            latencies.get(kind).record(latency);
+    }
+
+    void run() {
+        for (long i = number("warmup"); i > 0; i--)
+            handleNext(false);
+        long published = eventPublisher.getPublished();
+        long start = System.nanoTime();
+        for (long i = number("requests"); i > 0; i--)
+            handleNext(true);
+        long elapsed = System.nanoTime() - start;
+        report(elapsed, eventPublisher.getPublished() - published);
+    }
+
+    private void report(long elapsedNanos, long events) {
+        LatencyHistogram all = new LatencyHistogram();
+        latencies.values().forEach(all::add);
+        System.out.println("settings   " + settings);
+        System.out.printf("requests   %d in %.3f s, %.0f req/s%n", all.getTotalCount(), elapsedNanos / 1e9,
+                all.getTotalCount() / (elapsedNanos / 1e9));
+        System.out.printf("events     %d (%.2f per request) %s%n", events, (double) events / all.getTotalCount(),
+                eventPublisher.getCountByType());
+        LatencyHistogram.printHeader("request");
+        for (Kind kind : Kind.values())
+            latencies.get(kind).print(kind.name().toLowerCase());
+        all.print("all");
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> settings = new TreeMap<>(DEFAULTS);
+        for (String arg : args) {
+            String[] setting = arg.split("=", 2);
+            if (setting.length != 2 || !DEFAULTS.containsKey(setting[0]))
+                throw new IllegalArgumentException("Unknown setting " + arg + ", expected one of " + DEFAULTS.keySet());
+            settings.put(setting[0], setting[1]);
+        }
+        new LoadGenerator(settings).run();
+    }
+}
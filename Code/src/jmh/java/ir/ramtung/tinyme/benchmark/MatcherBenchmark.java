@@ -0,0 +1,61 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One incoming buy that sweeps {@code levels} sell levels. With the {@code ICEBERG} mix every resting order is an
+ * iceberg showing a tenth of its quantity, so the sweep also replenishes each of them nine times. The book is rebuilt
+ * before every invocation, which JMH excludes from the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatcherBenchmark {
+    public enum Mix {PLAIN, ICEBERG}
+
+    private static final int QUANTITY = 1_000;
+
+    @Param({"1", "10", "100"})
+    int levels;
+    @Param({"PLAIN", "ICEBERG"})
+    Mix mix;
+    @Param({"false", "true"})
+    boolean allocationFree;
+
+    private Matcher matcher;
+    private Security security;
+    private Broker broker;
+    private Shareholder shareholder;
+    private Order incoming;
+
+    @Setup(Level.Trial)
+    public void createMatcher() {
+        matcher = new Matcher();
+        matcher.setAllocationFree(allocationFree);
+        broker = Books.broker();
+    }
+
+    @Setup(Level.Invocation)
+    public void fillBook() {
+        security = Security.builder().isin("BENCH").build();
+        shareholder = Books.shareholder(security);
+        int peakSize = mix == Mix.ICEBERG ? QUANTITY / 10 : 0;
+        for (int level = 1; level <= levels; level++)
+            security.getOrderBook().enqueue(Books.order(level, security, Side.SELL, QUANTITY, Books.MID_PRICE + level,
+                    broker, shareholder, peakSize));
+        incoming = Books.order(levels + 1, security, Side.BUY, QUANTITY * levels, Books.MID_PRICE + levels, broker,
+                shareholder, 0);
+    }
+
+    @Benchmark
+    public MatchResult sweep() {
+        return matcher.execute(incoming);
+    }
+}
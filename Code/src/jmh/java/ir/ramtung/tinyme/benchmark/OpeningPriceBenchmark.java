@@ -0,0 +1,54 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The indicative opening price of an auction book with {@code depth} levels per side, half of which cross. In the
+ * {@code UNCHANGED} case the book is the same between calls; in the {@code CHANGED} case one order is added and removed
+ * before each call, which is what an auction order entry does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpeningPriceBenchmark {
+    public enum Book {UNCHANGED, CHANGED}
+
+    @Param({"10", "100", "1000"})
+    int depth;
+    @Param({"UNCHANGED", "CHANGED"})
+    Book book;
+
+    private OrderBook orderBook;
+    private Order entered;
+
+    @Setup(Level.Trial)
+    public void fillBook() {
+        Security security = AuctionSecurity.builder().isin("BENCH").price(Books.MID_PRICE).build();
+        Broker broker = Books.broker();
+        Shareholder shareholder = Books.shareholder(security);
+        orderBook = security.getOrderBook();
+        long orderId = 1;
+        for (int level = 0; level < depth; level++) {
+            orderBook.enqueue(Books.order(orderId++, security, Side.BUY, 100 + level, Books.MID_PRICE + depth / 2 - level,
+                    broker, shareholder, 0));
+            orderBook.enqueue(Books.order(orderId++, security, Side.SELL, 100 + level, Books.MID_PRICE - depth / 2 + level,
+                    broker, shareholder, 0));
+        }
+        entered = Books.order(orderId, security, Side.BUY, 50, Books.MID_PRICE, broker, shareholder, 0);
+    }
+
+    @Benchmark
+    public int calculateOpeningPrice() {
+        if (book == Book.CHANGED) {
+            orderBook.enqueue(entered);
+            orderBook.removeByOrderId(Side.BUY, entered.getOrderId());
+        }
+        return orderBook.calculateOpeningPrice(Books.MID_PRICE);
+    }
+}
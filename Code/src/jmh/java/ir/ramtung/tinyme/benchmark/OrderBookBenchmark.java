@@ -0,0 +1,76 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue maintenance on a resting book of {@code depth} price levels per side with {@code ordersPerLevel} orders each.
+ * Every operation leaves the book as it found it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookBenchmark {
+    @Param({"10", "100", "1000"})
+    int depth;
+    @Param({"1", "10"})
+    int ordersPerLevel;
+
+    private OrderBook orderBook;
+    private Order[] queued;
+    private Order newOrder;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fillBook() {
+        Security security = Security.builder().isin("BENCH").build();
+        Broker broker = Books.broker();
+        Shareholder shareholder = Books.shareholder(security);
+        orderBook = security.getOrderBook();
+        queued = new Order[2 * depth * ordersPerLevel];
+        long orderId = 1;
+        int count = 0;
+        for (int level = 1; level <= depth; level++) {
+            for (int i = 0; i < ordersPerLevel; i++) {
+                Order buy = Books.order(orderId++, security, Side.BUY, 100, Books.MID_PRICE - level, broker, shareholder, 0);
+                Order sell = Books.order(orderId++, security, Side.SELL, 100, Books.MID_PRICE + level, broker, shareholder, 0);
+                orderBook.enqueue(buy);
+                orderBook.enqueue(sell);
+                queued[count++] = buy;
+                queued[count++] = sell;
+            }
+        }
+        // a mid-book price, so the insertion has to find its level rather than append at either end
+        newOrder = Books.order(orderId, security, Side.BUY, 100, Books.MID_PRICE - depth / 2 - 1, broker, shareholder, 0);
+    }
+
+    private Order nextQueued() {
+        Order order = queued[next];
+        next = next + 1 == queued.length ? 0 : next + 1;
+        return order;
+    }
+
+    @Benchmark
+    public void enqueue() {
+        orderBook.enqueue(newOrder);
+        orderBook.removeByOrderId(Side.BUY, newOrder.getOrderId());
+    }
+
+    @Benchmark
+    public Order findByOrderId() {
+        Order order = nextQueued();
+        return orderBook.findByOrderId(order.getSide(), order.getOrderId());
+    }
+
+    @Benchmark
+    public void removeByOrderId() {
+        Order order = nextQueued();
+        orderBook.removeByOrderId(order.getSide(), order.getOrderId());
+        orderBook.enqueue(order);
+    }
+}
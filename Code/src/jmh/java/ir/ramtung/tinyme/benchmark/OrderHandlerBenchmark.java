@@ -0,0 +1,77 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.repository.BrokerRepository;
+import ir.ramtung.tinyme.repository.SecurityRepository;
+import ir.ramtung.tinyme.repository.ShareholderRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole request path through {@link OrderHandler}, validation and event creation included, against a book of
+ * {@code depth} levels per side. Each invocation handles two requests that leave the book as it was: a resting order
+ * and its deletion for {@code RESTING}, and a sell inside the spread followed by the buy that fills it for
+ * {@code CROSSING}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderHandlerBenchmark {
+    public enum Flow {RESTING, CROSSING}
+
+    private static final String ISIN = "BENCH";
+
+    @Param({"10", "1000"})
+    int depth;
+    @Param({"RESTING", "CROSSING"})
+    Flow flow;
+
+    private OrderHandler orderHandler;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void createHandler() {
+        SecurityRepository securityRepository = new SecurityRepository();
+        BrokerRepository brokerRepository = new BrokerRepository();
+        ShareholderRepository shareholderRepository = new ShareholderRepository();
+        Security security = Security.builder().isin(ISIN).build();
+        Broker broker = Books.broker();
+        Shareholder shareholder = Books.shareholder(security);
+        securityRepository.addSecurity(security);
+        brokerRepository.addBroker(broker);
+        shareholderRepository.addShareholder(shareholder);
+        for (int level = 1; level <= depth; level++) {
+            security.getOrderBook().enqueue(Books.order(nextId++, security, Side.BUY, 100, Books.MID_PRICE - level,
+                    broker, shareholder, 0));
+            security.getOrderBook().enqueue(Books.order(nextId++, security, Side.SELL, 100, Books.MID_PRICE + level,
+                    broker, shareholder, 0));
+        }
+        orderHandler = new OrderHandler(securityRepository, brokerRepository, shareholderRepository,
+                new CountingEventPublisher(), new Matcher());
+    }
+
+    private EnterOrderRq newOrder(long orderId, Side side, int price) {
+        return EnterOrderRq.createNewOrderRq(orderId, ISIN, orderId, Books.ENTRY_TIME, side, 100, price, 1, 1, 0);
+    }
+
+    @Benchmark
+    public void handleEnterOrder() {
+        long orderId = nextId++;
+        if (flow == Flow.RESTING) {
+            orderHandler.handleEnterOrder(newOrder(orderId, Side.BUY, Books.MID_PRICE - depth / 2 - 1));
+            orderHandler.handleDeleteOrder(new DeleteOrderRq(orderId, ISIN, Side.BUY, orderId));
+        } else {
+            orderHandler.handleEnterOrder(newOrder(orderId, Side.SELL, Books.MID_PRICE));
+            long buyId = nextId++;
+            orderHandler.handleEnterOrder(newOrder(buyId, Side.BUY, Books.MID_PRICE));
+        }
+    }
+}
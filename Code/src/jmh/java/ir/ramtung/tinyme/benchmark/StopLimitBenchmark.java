@@ -0,0 +1,52 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stop-limit activation against a book of {@code depth} buy stop orders one tick apart. {@code popActivatedOrders}
+ * activates the nearest {@code activated} of them and puts them back; {@code notTriggered} is the check every trade
+ * makes when the price does not reach any stop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StopLimitBenchmark {
+    @Param({"10", "100", "1000"})
+    int depth;
+    @Param({"1", "10"})
+    int activated;
+
+    private StopLimitOrderBook stopLimitOrderBook;
+    private final LinkedList<StopLimitOrder> activatedOrders = new LinkedList<>();
+
+    @Setup(Level.Trial)
+    public void fillBook() {
+        Security security = Security.builder().isin("BENCH").build();
+        Broker broker = Books.broker();
+        Shareholder shareholder = Books.shareholder(security);
+        stopLimitOrderBook = security.getStopLimitOrderBook();
+        for (int i = 1; i <= depth; i++)
+            stopLimitOrderBook.enqueue(new StopLimitOrder(i, security, Side.BUY, 100, Books.MID_PRICE + 2 * depth,
+                    broker, shareholder, Books.ENTRY_TIME, 0, Books.MID_PRICE + i, i));
+    }
+
+    @Benchmark
+    public int popActivatedOrders() {
+        int count = stopLimitOrderBook.popActivatedOrders(Books.MID_PRICE + activated, activatedOrders);
+        while (!activatedOrders.isEmpty())
+            stopLimitOrderBook.enqueue(activatedOrders.pop());
+        return count;
+    }
+
+    @Benchmark
+    public boolean notTriggered() {
+        return stopLimitOrderBook.isTriggeredBy(Books.MID_PRICE);
+    }
+}
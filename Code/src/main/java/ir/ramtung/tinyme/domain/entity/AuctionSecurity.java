@@ -18,15 +18,15 @@ public class AuctionSecurity extends Security{
 
     AuctionSecurity (Security security){
         super(security.getIsin(), security.getTickSize(), security.getLotSize(), security.getOrderBook(),
-                security.getPrice(), security.getStopLimitOrderBook(), security.getActivatedStopOrder());
+                security.getPrice(), security.getStopLimitOrderBook(), security.getActivatedStopOrder(), security.getId(),
+                security.getHolders());
     }
 
     @Override
     protected MatchResult handleOrderExecution (Order order ,Matcher matcher){
         if (order.getSide() == Side.BUY) {
-            if(!order.getBroker().hasEnoughCredit(order.getValue()))
+            if(!order.getBroker().tryDecreaseCreditBy(order.getValue()))
                 return MatchResult.notEnoughCredit();
-            order.getBroker().decreaseCreditBy(order.getValue());
         }
         orderBook.enqueue(order);
         order.queue();
@@ -35,13 +35,13 @@ public class AuctionSecurity extends Security{
     }
 
     @Override
-    public ArrayList<MatchResult> handleActivation() {
-        return new ArrayList<>();
+    public List<MatchResult> handleActivation() {
+        return List.of();
     }
 
     @Override
-    public ArrayList<MatchResult> executeActivatedStopOrders(Matcher matcher){
-        return new ArrayList<>();
+    public List<MatchResult> executeActivatedStopOrders(Matcher matcher){
+        return List.of();
     }
 
     @Override
@@ -68,8 +68,7 @@ public class AuctionSecurity extends Security{
 
         orderBook.removeByOrderId(updateOrderRq.getSide(), updateOrderRq.getOrderId());
         if (updateOrderRq.getSide() == Side.BUY) {
-            if(order.getBroker().hasEnoughCredit(order.getValue())) {
-                order.getBroker().decreaseCreditBy(order.getValue());
+            if(order.getBroker().tryDecreaseCreditBy(order.getValue())) {
                 orderBook.enqueue(order);
             }
             else {
@@ -116,7 +115,7 @@ public class AuctionSecurity extends Security{
         ArrayList<MatchResult> results = new ArrayList<>();
         Order buy = orderBook.getFirstBuy();
         while (buy != null) {
-            MatchResult temp = matcher.execute(buy, orderBook.getOpeningPrice());
+            MatchResult temp = matcher.execute(buy, orderBook.getOpeningPrice()).detach();
             results.add(temp);
             if (temp.getRemainder().getQuantity() != 0)
                 break;
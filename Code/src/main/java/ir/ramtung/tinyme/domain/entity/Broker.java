@@ -7,41 +7,53 @@ import lombok.ToString;
 
 @ToString
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
-@Builder
 public class Broker {
     @Getter
     @EqualsAndHashCode.Include
-    private long brokerId;
+    private final long brokerId;
     @Getter
-    private String name;
-    @Getter
-    private long credit;
-    @Getter
-    private long reservedCredit;
+    private final String name;
+    private final CreditLedger ledger;
+
+    @Builder
+    private Broker(long brokerId, String name, long credit, long reservedCredit) {
+        this.brokerId = brokerId;
+        this.name = name;
+        this.ledger = new CreditLedger(credit, reservedCredit);
+    }
+
+    public long getCredit() {
+        return ledger.getCredit();
+    }
+
+    public long getReservedCredit() {
+        return ledger.getReservedCredit();
+    }
 
     public void increaseCreditBy(long amount) {
         assert amount >= 0;
-        credit += amount;
+        ledger.credit(amount);
     }
 
     public void decreaseCreditBy(long amount) {
         assert amount >= 0;
-        credit -= amount;
+        ledger.debit(amount);
     }
 
     public boolean hasEnoughCredit(long amount) {
-        return credit - reservedCredit >= amount;
+        return ledger.getAvailableCredit() >= amount;
+    }
+
+    public boolean tryDecreaseCreditBy(long amount) {
+        assert amount >= 0;
+        return ledger.tryDebit(amount);
     }
 
     public boolean reserveCredit(long amount){
-        if (credit - reservedCredit - amount > 0){
-            reservedCredit += amount;
-            return true;
-        }
-        return false;
+        return ledger.tryReserve(amount);
     }
 
     public void releaseReservedCredit (long amount){
-        reservedCredit -= amount;
+        ledger.release(amount);
     }
 }
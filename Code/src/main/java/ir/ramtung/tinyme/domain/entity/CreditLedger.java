@@ -0,0 +1,69 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import lombok.ToString;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The credit of a broker, safe to use from several matching threads at once without a lock. It keeps the credit that
+ * is not reserved as the balance every check-and-debit and reservation is decided on, so each of those is a single
+ * compare-and-set on one word. The reserved amount is kept beside it and only moves by plain atomic adds, which means
+ * {@link #getCredit()} is exact whenever no operation is in flight, such as while the engine state is being saved.
+ */
+@ToString
+public class CreditLedger {
+    private final AtomicLong available;
+    private final AtomicLong reserved;
+
+    public CreditLedger(long credit, long reservedCredit) {
+        available = new AtomicLong(credit - reservedCredit);
+        reserved = new AtomicLong(reservedCredit);
+    }
+
+    public long getCredit() {
+        return available.get() + reserved.get();
+    }
+
+    public long getReservedCredit() {
+        return reserved.get();
+    }
+
+    public long getAvailableCredit() {
+        return available.get();
+    }
+
+    public void credit(long amount) {
+        available.addAndGet(amount);
+    }
+
+    public void debit(long amount) {
+        available.addAndGet(-amount);
+    }
+
+    public boolean tryDebit(long amount) {
+        long current;
+        do {
+            current = available.get();
+            if (current < amount)
+                return false;
+        } while (!available.compareAndSet(current, current - amount));
+        return true;
+    }
+
+    // unlike tryDebit, a reservation must leave some credit available
+    public boolean tryReserve(long amount) {
+        long current;
+        do {
+            current = available.get();
+            if (current - amount <= 0)
+                return false;
+        } while (!available.compareAndSet(current, current - amount));
+        reserved.addAndGet(amount);
+        return true;
+    }
+
+    public void release(long amount) {
+        reserved.addAndGet(-amount);
+        available.addAndGet(amount);
+    }
+}
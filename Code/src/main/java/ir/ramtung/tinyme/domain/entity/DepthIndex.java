@@ -0,0 +1,185 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.List;
+
+/**
+ * Queued quantity of both sides of a book bucketed per price step in Fenwick trees, kept up to date as orders are
+ * added, reduced and removed. With D(p) the buy quantity at p or above and S(p) the sell quantity at p or below, the
+ * executable quantity min(D(p), S(p)) peaks at the price where the two curves cross, and the auction bounds are the
+ * buy and sell prices at which each curve first reaches that peak. All three are prefix-sum searches.
+ * <p>
+ * The price axis starts at the lowest queued price with a step equal to the greatest common divisor of the price
+ * gaps, and is rebuilt from the queues when a price falls outside it or off its grid. A book whose price span does
+ * not fit in {@link #MAX_SLOTS} steps is not indexed and {@link #isUsable()} reports false.
+ */
+class DepthIndex implements OrderQueue.DepthListener {
+    static final int MAX_SLOTS = 1 << 16;
+
+    private final OrderQueue<Order> buyQueue;
+    private final OrderQueue<Order> sellQueue;
+    private long base;
+    private long step;
+    private int slots;
+    private long[] buyTree;
+    private long[] sellTree;
+    // sell quantity at slot i plus buy quantity at slot i - 1; its prefix sums are S(p) + (total buy - D(p))
+    private long[] crossTree;
+    private long totalBuy;
+    private boolean usable;
+
+    DepthIndex(OrderQueue<Order> buyQueue, OrderQueue<Order> sellQueue) {
+        this.buyQueue = buyQueue;
+        this.sellQueue = sellQueue;
+        rebuild();
+    }
+
+    boolean isUsable() {
+        return usable;
+    }
+
+    @Override
+    public void depthChanged(Side side, long price, long delta) {
+        if (!usable)
+            return;
+        if (!fits(price)) {
+            rebuild();
+            return;
+        }
+        int slot = (int) ((price - base) / step);
+        if (side == Side.BUY) {
+            add(buyTree, slot, delta);
+            add(crossTree, slot + 1, delta);
+            totalBuy += delta;
+        } else {
+            add(sellTree, slot, delta);
+            add(crossTree, slot, delta);
+        }
+    }
+
+    private boolean fits(long price) {
+        if (price < base || (price - base) % step != 0)
+            return false;
+        return (price - base) / step < slots - 1;
+    }
+
+    void rebuild() {
+        long low = Long.MAX_VALUE;
+        long high = Long.MIN_VALUE;
+        for (OrderQueue<Order> queue : List.of(buyQueue, sellQueue)) {
+            for (PriceLevel<Order> level : queue.levels()) {
+                low = Math.min(low, level.getPrice());
+                high = Math.max(high, level.getPrice());
+            }
+        }
+        if (low > high)
+            low = high = 0;
+        long gcd = 0;
+        for (OrderQueue<Order> queue : List.of(buyQueue, sellQueue))
+            for (PriceLevel<Order> level : queue.levels())
+                gcd = gcd(gcd, level.getPrice() - low);
+        step = (gcd == 0) ? 1 : gcd;
+
+        long span = (high - low) / step + 2;
+        if (span > MAX_SLOTS) {
+            usable = false;
+            buyTree = sellTree = crossTree = null;
+            return;
+        }
+        slots = (int) Math.min(MAX_SLOTS, Math.max(16, Long.highestOneBit(span) << 2));
+        base = low - (slots - span) / 2 * step;
+        buyTree = new long[slots + 1];
+        sellTree = new long[slots + 1];
+        crossTree = new long[slots + 1];
+        totalBuy = 0;
+        for (PriceLevel<Order> level : buyQueue.levels()) {
+            int slot = (int) ((level.getPrice() - base) / step);
+            buyTree[slot + 1] += level.totalQuantity();
+            crossTree[slot + 2] += level.totalQuantity();
+            totalBuy += level.totalQuantity();
+        }
+        for (PriceLevel<Order> level : sellQueue.levels()) {
+            int slot = (int) ((level.getPrice() - base) / step);
+            sellTree[slot + 1] += level.totalQuantity();
+            crossTree[slot + 1] += level.totalQuantity();
+        }
+        heapify(buyTree);
+        heapify(sellTree);
+        heapify(crossTree);
+        usable = true;
+    }
+
+    // the peak executable quantity; D(p) >= S(p) below the crossing slot and D(p) <= S(p) from it on
+    long tradableQuantity() {
+        int cross = search(crossTree, totalBuy);
+        long demandAtCross = totalBuy - prefix(buyTree, cross - 1);
+        long supplyBelowCross = prefix(sellTree, cross - 1);
+        return Math.max(demandAtCross, supplyBelowCross);
+    }
+
+    // highest buy price at which the executable quantity is maximal, i.e. where D(p) first reaches the peak
+    Pair<Integer, Integer> upperBound() {
+        long quantity = tradableQuantity();
+        if (quantity == 0)
+            return Pair.of(0, 0);
+        int slot = search(buyTree, totalBuy - quantity + 1);
+        return Pair.of((int) priceOf(slot), (int) quantity);
+    }
+
+    // lowest sell price at which the executable quantity is maximal, i.e. where S(p) first reaches the peak
+    Pair<Integer, Integer> lowerBound() {
+        long quantity = tradableQuantity();
+        if (quantity == 0)
+            return Pair.of(0, 0);
+        int slot = search(sellTree, quantity);
+        return Pair.of((int) priceOf(slot), (int) quantity);
+    }
+
+    private long priceOf(int slot) {
+        return base + slot * step;
+    }
+
+    private static void add(long[] tree, int slot, long delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i)
+            tree[i] += delta;
+    }
+
+    // sum of slots 0..slot
+    private static long prefix(long[] tree, int slot) {
+        long sum = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i)
+            sum += tree[i];
+        return sum;
+    }
+
+    // lowest slot whose prefix sum reaches target
+    private static int search(long[] tree, long target) {
+        int position = 0;
+        for (int bit = Integer.highestOneBit(tree.length - 1); bit > 0; bit >>= 1) {
+            int next = position + bit;
+            if (next < tree.length && tree[next] < target) {
+                position = next;
+                target -= tree[next];
+            }
+        }
+        return position;
+    }
+
+    private static void heapify(long[] tree) {
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length)
+                tree[parent] += tree[i];
+        }
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.abs(a);
+    }
+}
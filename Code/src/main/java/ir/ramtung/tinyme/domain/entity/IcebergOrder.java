@@ -22,6 +22,15 @@ public class IcebergOrder extends Order {
         this.displayedQuantity = displayedQuantity;
     }
 
+    public IcebergOrder(long orderId, Security security, Side side, int initialQuantity, int quantity, int price,
+                        Broker broker, Shareholder shareholder, LocalDateTime entryTime, OrderStatus status,
+                        long minimumExecutionQuantity, boolean isUpdated, int peakSize, int displayedQuantity) {
+        super(orderId, security, side, initialQuantity, quantity, price, broker, shareholder, entryTime, status,
+                minimumExecutionQuantity, isUpdated);
+        this.peakSize = peakSize;
+        this.displayedQuantity = displayedQuantity;
+    }
+
     public IcebergOrder(long orderId, Security security, Side side, int quantity, int price, Broker broker,
                         Shareholder shareholder, LocalDateTime entryTime, int peakSize, int displayedQuantity,
                         OrderStatus status) {
@@ -123,7 +132,7 @@ public class IcebergOrder extends Order {
     public void handleIcebergDecreaseQuantity(int amount){
         if (amount > displayedQuantity)
             throw new IllegalArgumentException();
-        quantity -= amount;
+        changeQuantity(quantity - amount);
         displayedQuantity -= amount;
     }
 }
@@ -2,109 +2,157 @@ package ir.ramtung.tinyme.domain.entity;
 
 import lombok.Getter;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 @Getter
 public final class MatchResult {
-    private final MatchingOutcome outcome;
-    private final Order remainder;
-    private final LinkedList<Trade> trades;
+    private MatchingOutcome outcome;
+    private Order remainder;
+    private List<Trade> trades;
     private final int auctionPrice ;
     private final int tradableQuantity;
+    private final boolean reusable;
     static final private String MATCH_RESULT_STRING = "MatchResult[";
     static final private String REMAINDER_STRING = "remainder=";
     static final private String TRADES_STRING = "trades=";
 
+    private static final MatchResult NOT_ENOUGH_CREDIT = rejected(MatchingOutcome.NOT_ENOUGH_CREDIT);
+    private static final MatchResult NOT_ENOUGH_POSITIONS = rejected(MatchingOutcome.NOT_ENOUGH_POSITIONS);
+    private static final MatchResult INVALID_MIN_EXEC_QUANTITY = rejected(MatchingOutcome.INVALID_MIN_EXEC_QUANTITY);
+    private static final MatchResult MIN_EXEC_QUANTITY_HAVE_NOT_MET =
+            rejected(MatchingOutcome.MIN_EXEC_QUANTITY_HAVE_NOT_MET);
+    private static final MatchResult CHANGING_MIN_EXEC_QUANTITY_IN_UPDATE_REQUEST =
+            rejected(MatchingOutcome.CHANGING_MIN_EXEC_QUANTITY_IN_UPDATE_REQUEST);
+    private static final MatchResult STOP_LIMIT_ORDER_QUEUED = rejected(MatchingOutcome.STOP_LIMIT_ORDER_QUEUED);
+    private static final MatchResult STOP_LIMIT_ORDER_EXECUTED = rejected(MatchingOutcome.STOP_LIMIT_ORDER_EXECUTED);
+    private static final MatchResult INVALID_STOP_LIMIT_ORDER = rejected(MatchingOutcome.INVALID_STOP_LIMIT_ORDER);
+    private static final MatchResult STOP_LIMIT_ORDER_UPDATED = rejected(MatchingOutcome.STOP_LIMIT_ORDER_UPDATED);
+    private static final MatchResult CANNOT_CHANGE_STOP_LIMIT_ORDER_FOR_AUCTION_SECURITY =
+            rejected(MatchingOutcome.CANNOT_CHANGE_STOP_LIMIT_ORDER_FOR_AUCTION_SECURITY);
+    private static final MatchResult CANNOT_ADD_MIN_EXEC_QUANTITY_TO_AUCTION_ORDER =
+            rejected(MatchingOutcome.CANNOT_ADD_MIN_EXEC_QUANTITY_TO_AUCTION_ORDER);
+    private static final MatchResult INVALID_OPENING_PRICE = rejected(MatchingOutcome.INVALID_OPENING_PRICE);
+
+    private static MatchResult rejected(MatchingOutcome outcome) {
+        return new MatchResult(outcome, null, List.of(), 0, 0);
+    }
+
     public static MatchResult executed(Order remainder, List<Trade> trades) {
-        return new MatchResult(MatchingOutcome.EXECUTED, remainder, new LinkedList<>(trades) , 0,
-                0);
+        return new MatchResult(MatchingOutcome.EXECUTED, remainder, trades, 0, 0);
+    }
+
+    /**
+     * A result that a matcher refills with {@link #reuseAs} on every match instead of allocating a new one. It and
+     * its trades are only valid until the next match; {@link #detach} copies them for callers that keep them longer.
+     */
+    public static MatchResult reusable() {
+        return new MatchResult(MatchingOutcome.EXECUTED, null, List.of(), 0, 0, true);
     }
 
     public static MatchResult notEnoughCredit() {
-        return new MatchResult(MatchingOutcome.NOT_ENOUGH_CREDIT, null, new LinkedList<>(), 0,
-                0);
+        return NOT_ENOUGH_CREDIT;
     }
     public static MatchResult notEnoughPositions() {
-        return new MatchResult(MatchingOutcome.NOT_ENOUGH_POSITIONS, null, new LinkedList<>(), 0,
-                0);
+        return NOT_ENOUGH_POSITIONS;
     }
     public static MatchResult invalidMinExecQuantity() {
-        return new MatchResult(MatchingOutcome.INVALID_MIN_EXEC_QUANTITY, null, new LinkedList<>(), 0,
-                0);
+        return INVALID_MIN_EXEC_QUANTITY;
     }
     public static MatchResult minExecQuantityHaveNotMet(){
-        return new MatchResult(MatchingOutcome.MIN_EXEC_QUANTITY_HAVE_NOT_MET, null, new LinkedList<>(), 0,
-                0);
+        return MIN_EXEC_QUANTITY_HAVE_NOT_MET;
     }
     public static MatchResult changingMinExecQuantityWhileUpdating(){
-        return new MatchResult(MatchingOutcome.CHANGING_MIN_EXEC_QUANTITY_IN_UPDATE_REQUEST, null,
-                new LinkedList<>(), 0, 0);
+        return CHANGING_MIN_EXEC_QUANTITY_IN_UPDATE_REQUEST;
     }
     public static MatchResult stopLimitOrderQueued(){
-        return new MatchResult(MatchingOutcome.STOP_LIMIT_ORDER_QUEUED, null, new LinkedList<>(), 0,
-                0);
+        return STOP_LIMIT_ORDER_QUEUED;
     }
     public static MatchResult stopLimitOrderExecuted(){
-        return new MatchResult(MatchingOutcome.STOP_LIMIT_ORDER_EXECUTED, null, new LinkedList<>(), 0,
-                0);
+        return STOP_LIMIT_ORDER_EXECUTED;
     }
     public static MatchResult stopLimitOrderExecutedDirectly(Order remainder, List<Trade> trades){
-        return new MatchResult(MatchingOutcome.STOP_LIMIT_ORDER_EXECUTED_DIRECTLY, remainder, new LinkedList<>(trades),
+        return new MatchResult(MatchingOutcome.STOP_LIMIT_ORDER_EXECUTED_DIRECTLY, remainder, trades,
                 0, 0);
     }
     public static MatchResult invalidStopLimitOrder(){
-        return new MatchResult(MatchingOutcome.INVALID_STOP_LIMIT_ORDER, null, new LinkedList<>(), 0,
-                0);
+        return INVALID_STOP_LIMIT_ORDER;
     }
 
     public static MatchResult stopLimitOrderActivated(Order remainder){
-        return new MatchResult(MatchingOutcome.STOP_LIMIT_ORDER_QUEUED, remainder, new LinkedList<>(), 0,
+        return new MatchResult(MatchingOutcome.STOP_LIMIT_ORDER_QUEUED, remainder, List.of(), 0,
                 0);
     }
 
     public static MatchResult stopLimitOrderUpdated(){
-        return new MatchResult(MatchingOutcome.STOP_LIMIT_ORDER_UPDATED, null, new LinkedList<>(), 0,
-                0);
+        return STOP_LIMIT_ORDER_UPDATED;
     }
 
     public static MatchResult orderAddedToAuction(int price, int tradablePrice){
-        return new MatchResult(MatchingOutcome.ORDER_ADDED_TO_AUCTION, null, new LinkedList<>(), price,
+        return new MatchResult(MatchingOutcome.ORDER_ADDED_TO_AUCTION, null, List.of(), price,
                 tradablePrice);
     }
 
     public static MatchResult auctionOpened (int price, int tradablePrice){
-        return new MatchResult(MatchingOutcome.OPENED, null, new LinkedList<>(), price, tradablePrice);
+        return new MatchResult(MatchingOutcome.OPENED, null, List.of(), price, tradablePrice);
     }
 
     public static MatchResult updateAuctionStopLimitError() {
-        return new MatchResult(MatchingOutcome.CANNOT_CHANGE_STOP_LIMIT_ORDER_FOR_AUCTION_SECURITY, null,
-                                                                new LinkedList<>(), 0, 0);
+        return CANNOT_CHANGE_STOP_LIMIT_ORDER_FOR_AUCTION_SECURITY;
     }
 
     public static MatchResult addMinExecToAuction() {
-
-        return new MatchResult(MatchingOutcome.CANNOT_ADD_MIN_EXEC_QUANTITY_TO_AUCTION_ORDER, null,
-                new LinkedList<>(), 0, 0);
+        return CANNOT_ADD_MIN_EXEC_QUANTITY_TO_AUCTION_ORDER;
     }
 
     public static MatchResult changeAuctionOrderBook(int openingPrice, int quantity) {
         return new MatchResult(MatchingOutcome.AUCTION_ORDER_BOOK_CHANGED, null,
-                new LinkedList<>(), openingPrice, quantity);
+                List.of(), openingPrice, quantity);
     }
 
     public static MatchResult invalidOpeningPrice(){
-        return new MatchResult(MatchingOutcome.INVALID_OPENING_PRICE, null,
-        new LinkedList<>(), 0, 0);
+        return INVALID_OPENING_PRICE;
     }
 
-    public MatchResult(MatchingOutcome outcome, Order remainder, LinkedList<Trade> trades, int auctionPrice,
+    public MatchResult(MatchingOutcome outcome, Order remainder, List<Trade> trades, int auctionPrice,
                        int tradableQuantity) {
+        this(outcome, remainder, trades, auctionPrice, tradableQuantity, false);
+    }
+
+    private MatchResult(MatchingOutcome outcome, Order remainder, List<Trade> trades, int auctionPrice,
+                        int tradableQuantity, boolean reusable) {
         this.outcome = outcome;
         this.remainder = remainder;
         this.trades = trades;
         this.auctionPrice = auctionPrice;
         this.tradableQuantity = tradableQuantity;
+        this.reusable = reusable;
+    }
+
+    public MatchResult reuseAs(MatchingOutcome outcome, Order remainder, List<Trade> trades) {
+        if (!reusable)
+            throw new IllegalStateException("MatchResult is not reusable");
+        this.outcome = outcome;
+        this.remainder = remainder;
+        this.trades = trades;
+        return this;
+    }
+
+    public MatchResult detach() {
+        if (!reusable)
+            return this;
+        ArrayList<Trade> copies = new ArrayList<>(trades.size());
+        for (int i = 0; i < trades.size(); i++)
+            copies.add(trades.get(i).copy());
+        return new MatchResult(outcome, remainder, copies, auctionPrice, tradableQuantity);
+    }
+
+    public boolean hasTrades() {
+        return !trades.isEmpty();
+    }
+
+    public Trade lastTrade() {
+        return trades.get(trades.size() - 1);
     }
 
     public MatchingOutcome outcome() {
@@ -114,7 +162,7 @@ public final class MatchResult {
         return remainder;
     }
 
-    public LinkedList<Trade> trades() {
+    public List<Trade> trades() {
         return trades;
     }
 
@@ -0,0 +1,85 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.Arrays;
+
+/**
+ * Finds the auction price bounds from cumulative depth curves. Each side is reduced to its distinct price levels
+ * with the quantity queued at that price or better, and each bound is then found in a single merge-like pass over
+ * both curves. The working arrays are kept between calls.
+ */
+class OpeningPriceCalculator {
+    private long[] buyPrices = new long[16];
+    private long[] buyDepth = new long[16];
+    private int buyLevels;
+    private long[] sellPrices = new long[16];
+    private long[] sellDepth = new long[16];
+    private int sellLevels;
+
+    void load(OrderQueue<Order> buyQueue, OrderQueue<Order> sellQueue) {
+        int levels = buyQueue.levels().size();
+        if (buyPrices.length < levels) {
+            buyPrices = Arrays.copyOf(buyPrices, Integer.highestOneBit(levels) << 1);
+            buyDepth = Arrays.copyOf(buyDepth, buyPrices.length);
+        }
+        buyLevels = fillCurve(buyQueue, buyPrices, buyDepth);
+
+        levels = sellQueue.levels().size();
+        if (sellPrices.length < levels) {
+            sellPrices = Arrays.copyOf(sellPrices, Integer.highestOneBit(levels) << 1);
+            sellDepth = Arrays.copyOf(sellDepth, sellPrices.length);
+        }
+        sellLevels = fillCurve(sellQueue, sellPrices, sellDepth);
+    }
+
+    private static int fillCurve(OrderQueue<Order> queue, long[] prices, long[] depth) {
+        int count = 0;
+        long cumulative = 0;
+        for (PriceLevel<Order> level : queue.levels()) {
+            cumulative += level.totalQuantity();
+            prices[count] = level.getPrice();
+            depth[count] = cumulative;
+            count++;
+        }
+        return count;
+    }
+
+    // highest buy price at which the executable quantity is maximal; buy levels are walked from the best price down
+    Pair<Integer, Integer> upperBound() {
+        long bestQuantity = 0;
+        long bestPrice = 0;
+        int sell = sellLevels - 1;
+        for (int buy = 0; buy < buyLevels; buy++) {
+            while (sell >= 0 && sellPrices[sell] > buyPrices[buy])
+                sell--;
+            long executable = Math.min(sell >= 0 ? sellDepth[sell] : 0, buyDepth[buy]);
+            if (executable < bestQuantity)
+                break;
+            if (executable > bestQuantity) {
+                bestQuantity = executable;
+                bestPrice = buyPrices[buy];
+            }
+        }
+        return Pair.of((int) bestPrice, (int) bestQuantity);
+    }
+
+    // lowest sell price at which the executable quantity is maximal; sell levels are walked from the best price up
+    Pair<Integer, Integer> lowerBound() {
+        long bestQuantity = 0;
+        long bestPrice = 0;
+        int buy = buyLevels - 1;
+        for (int sell = 0; sell < sellLevels; sell++) {
+            while (buy >= 0 && buyPrices[buy] < sellPrices[sell])
+                buy--;
+            long executable = Math.min(buy >= 0 ? buyDepth[buy] : 0, sellDepth[sell]);
+            if (executable < bestQuantity)
+                break;
+            if (executable > bestQuantity) {
+                bestQuantity = executable;
+                bestPrice = sellPrices[sell];
+            }
+        }
+        return Pair.of((int) bestPrice, (int) bestQuantity);
+    }
+}
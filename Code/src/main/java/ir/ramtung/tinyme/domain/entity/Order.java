@@ -1,14 +1,13 @@
 package ir.ramtung.tinyme.domain.entity;
 
 import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
-import lombok.Builder;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
 import java.time.LocalDateTime;
 
-@Builder
 @EqualsAndHashCode
 @ToString
 @Getter
@@ -21,12 +20,22 @@ public class Order {
     protected int price;
     protected Broker broker;
     protected Shareholder shareholder;
-    @Builder.Default
     protected LocalDateTime entryTime = LocalDateTime.now();
-    @Builder.Default
     protected OrderStatus status = OrderStatus.NEW;
     protected long minimumExecutionQuantity ;
     protected boolean isUpdated;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    PriceLevel<?> level;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    Order previous;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    Order next;
 
     public Order(long orderId, Security security, Side side, int initialQuantity, int quantity, int price, Broker broker, Shareholder shareholder,
                  LocalDateTime entryTime, OrderStatus status, long minimumExecutionQuantity, boolean isUpdated){
@@ -92,14 +101,24 @@ public class Order {
             return price <= other.price;
     }
 
+    protected void changeQuantity(int newQuantity) {
+        if (level != null)
+            level.quantityChanged(this, newQuantity - quantity);
+        quantity = newQuantity;
+    }
+
     public void decreaseQuantity(int amount) {
         if (amount > quantity)
             throw new IllegalArgumentException();
-        quantity -= amount;
+        changeQuantity(quantity - amount);
+    }
+
+    public void restoreQuantity(int quantity) {
+        changeQuantity(quantity);
     }
 
     public void makeQuantityZero() {
-        quantity = 0;
+        changeQuantity(0);
     }
 
     public boolean queuesBefore(Order order) {
@@ -123,7 +142,7 @@ public class Order {
     }
 
     public void updateFromRequest(EnterOrderRq updateOrderRq) {
-        quantity = updateOrderRq.getQuantity();
+        changeQuantity(updateOrderRq.getQuantity());
         price = updateOrderRq.getPrice();
     }
 
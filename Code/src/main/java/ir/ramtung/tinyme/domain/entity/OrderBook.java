@@ -1,76 +1,89 @@
 package ir.ramtung.tinyme.domain.entity;
 
-import ir.ramtung.tinyme.messaging.exception.InvalidRequestException;
 import lombok.Getter;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 
-@Getter
 public class OrderBook {
-    private final LinkedList<Order> buyQueue;
-    private final LinkedList<Order> sellQueue;
+    private final OrderQueue<Order> buyQueue;
+    private final OrderQueue<Order> sellQueue;
+    private final OpeningPriceCalculator openingPriceCalculator;
+    private DepthIndex depthIndex;
+    @Getter
     private int tradableQuantity ;
+    @Getter
     private int openingPrice ;
 
     public OrderBook() {
-        buyQueue = new LinkedList<>();
-        sellQueue = new LinkedList<>();
+        buyQueue = OrderQueue.forSide(Side.BUY);
+        sellQueue = OrderQueue.forSide(Side.SELL);
+        openingPriceCalculator = new OpeningPriceCalculator();
         tradableQuantity = 0;
     }
 
+    public LinkedList<Order> getBuyQueue() {
+        return buyQueue.toList();
+    }
+
+    public LinkedList<Order> getSellQueue() {
+        return sellQueue.toList();
+    }
+
     public Order getFirstBuy (){
-        if (!buyQueue.isEmpty() && buyQueue.getFirst().canGetExecuted(openingPrice))
-            return buyQueue.pop();
+        Order first = buyQueue.first();
+        if (first != null && first.canGetExecuted(openingPrice))
+            return buyQueue.removeFirst();
         return null;
     }
 
     public void enqueue(Order order) {
-        List<Order> queue = getQueue(order.getSide());
-        ListIterator<Order> it = queue.listIterator();
-        iterateThroughQueue(it, order);
         order.queue();
-        it.add(order);
+        getQueue(order.getSide()).addLast(order);
+    }
+
+    // builds an empty book from loaded orders; orders of the same price keep their given order
+    public void enqueueAll(List<Order> buyOrders, List<Order> sellOrders) {
+        buyOrders.forEach(Order::queue);
+        sellOrders.forEach(Order::queue);
+        buyQueue.addAll(buyOrders);
+        sellQueue.addAll(sellOrders);
+    }
+
+    // appends an order restored from persisted state as it was, without requeueing it
+    public void restoreQueued(Order order) {
+        getQueue(order.getSide()).addLast(order);
     }
 
-    private LinkedList<Order> getQueue(Side side) {
+    public void restoreOpeningPrice(int openingPrice, int tradableQuantity) {
+        this.openingPrice = openingPrice;
+        this.tradableQuantity = tradableQuantity;
+    }
+
+    OrderQueue<Order> getQueue(Side side) {
         return side == Side.BUY ? buyQueue : sellQueue;
     }
 
     public Order findByOrderId(Side side, long orderId) {
-        var queue = getQueue(side);
-        for (Order order : queue) {
-            if (order.getOrderId() == orderId)
-                return order;
-        }
-        return null;
+        return getQueue(side).find(orderId);
     }
 
     public void removeByOrderId(Side side, long orderId) {
-        var queue = getQueue(side);
-        var it = queue.listIterator();
-        while (it.hasNext()) {
-            if (it.next().getOrderId() == orderId) {
-                it.remove();
-                return;
-            }
-        }
+        getQueue(side).remove(orderId);
     }
 
     public Order matchWithFirst(Order newOrder) {
-        var queue = getQueue(newOrder.getSide().opposite());
-        if (newOrder.matches(queue.getFirst()))
-            return queue.getFirst();
+        Order first = getQueue(newOrder.getSide().opposite()).first();
+        if (newOrder.matches(first))
+            return first;
         else
             return null;
     }
 
     public void putBack(Order order) {
-        LinkedList<Order> queue = getQueue(order.getSide());
         order.queue();
-        queue.addFirst(order);
+        getQueue(order.getSide()).addFirst(order);
     }
 
     public void restoreOrder(Order order) {
@@ -78,6 +91,12 @@ public class OrderBook {
         putBack(order);
     }
 
+    public void restoreOrder(Order order, int quantity) {
+        removeByOrderId(order.getSide(), order.getOrderId());
+        order.restoreQuantity(quantity);
+        putBack(order);
+    }
+
     public boolean hasOrderOfType(Side side) {
         return !getQueue(side).isEmpty();
     }
@@ -87,71 +106,13 @@ public class OrderBook {
     }
 
     public int totalSellQuantityByShareholder(Shareholder shareholder) {
-        return sellQueue.stream()
-                .filter(order -> order.getShareholder().equals(shareholder))
-                .mapToInt(Order::getTotalQuantity)
-                .sum();
-    }
-
-    public void iterateThroughQueue(ListIterator<Order> it, Order order){
-        while (it.hasNext()) {
-            if (order.queuesBefore(it.next())) {
-                it.previous();
-                break;
-            }
-        }
-    }
-
-    protected int calculateOppositeSideTradableQuantity(Order order){
-
-        LinkedList<Order> oppositeQueue = getQueue(order.side.opposite());
-
-        int tradableQuantity = 0;
-        for (int i = 0; i < oppositeQueue.size() ; i++ ){
-            if (order.matches(oppositeQueue.get(i)))
-                tradableQuantity += oppositeQueue.get(i).getWholeQuantity();
-            else
-                break;
-        }
-        return tradableQuantity;
+        return (int) sellQueue.totalQuantityOf(shareholder);
     }
 
     protected boolean isLowerPriceCloser (int lowerPrice, int higherPrice, int targetPrice){
         return Math.abs(targetPrice - lowerPrice) <= Math.abs(higherPrice - targetPrice) ;
     }
 
-    protected Pair<Integer, Integer> findOptimalOpeningPriceBySide (Side side){
-        int currentTradableQuantity = 0;
-        int bestTradableQuantity = 0 ;
-        int bestprice = 0;
-
-        LinkedList<Order> queue = getQueue(side);
-
-        for (int currentIndex = 0; currentIndex < queue.size() ; currentIndex++ ){
-            Order order = queue.get(currentIndex);
-            currentTradableQuantity += order.getWholeQuantity();
-            int tempTradableQuantity = Math.min(calculateOppositeSideTradableQuantity(order) , currentTradableQuantity);
-            if (tempTradableQuantity < bestTradableQuantity)
-                break;
-            else if(tempTradableQuantity > bestTradableQuantity) {
-                bestprice = order.getPrice();
-                bestTradableQuantity = tempTradableQuantity;
-
-            }
-//            else if (tempTradableQuantity == bestTradableQuantity){
-//                if (isLowerPriceCloser(order.getPrice(), bestprice, (int) price))
-//                    bestprice = order.getPrice();
-//                else
-//                    break;
-//            }
-//            else {//TODO:should be lower than next sell.
-//                bestprice = order.getPrice();
-//                bestTradableQuantity = tempTradableQuantity ;
-//            }
-        }
-        return Pair.of(bestprice, bestTradableQuantity);
-    }
-
 //    protected int findFirstHigherBuyPrice(int lowerBound){
 //        int bestPrice = Integer.MAX_VALUE;
 //        for (int i = buyQueue.size()-1 ; i >= 0 ; i--){
@@ -174,10 +135,35 @@ public class OrderBook {
             return price;
     }
 
+    private boolean trackDepth() {
+        if (depthIndex == null) {
+            depthIndex = new DepthIndex(buyQueue, sellQueue);
+            buyQueue.setDepthListener(depthIndex);
+            sellQueue.setDepthListener(depthIndex);
+        } else if (!depthIndex.isUsable()) {
+            depthIndex.rebuild();
+        }
+        return depthIndex.isUsable();
+    }
+
+    public void stopTrackingDepth() {
+        buyQueue.setDepthListener(null);
+        sellQueue.setDepthListener(null);
+        depthIndex = null;
+    }
+
     public int calculateOpeningPrice (long price) {
         //<price, tradeable quantity>
-        Pair<Integer, Integer> upperBoundResult = findOptimalOpeningPriceBySide(Side.BUY);
-        Pair<Integer, Integer> lowerBoundResult = findOptimalOpeningPriceBySide(Side.SELL);
+        Pair<Integer, Integer> upperBoundResult;
+        Pair<Integer, Integer> lowerBoundResult;
+        if (trackDepth()) {
+            upperBoundResult = depthIndex.upperBound();
+            lowerBoundResult = depthIndex.lowerBound();
+        } else {
+            openingPriceCalculator.load(buyQueue, sellQueue);
+            upperBoundResult = openingPriceCalculator.upperBound();
+            lowerBoundResult = openingPriceCalculator.lowerBound();
+        }
 
         int upperBoundPrice = upperBoundResult.getLeft();
         int lowerBoundPrice = lowerBoundResult.getLeft();
@@ -195,9 +181,9 @@ public class OrderBook {
 
     public int handleZeroTradableQuantity(long price){
         if(sellQueue.isEmpty() && !buyQueue.isEmpty())
-            return (int)Math.min(buyQueue.getFirst().getPrice(), price);
+            return (int)Math.min(buyQueue.first().getPrice(), price);
         else if(buyQueue.isEmpty() && !sellQueue.isEmpty())
-            return (int)Math.max(sellQueue.getFirst().getPrice(), price);
+            return (int)Math.max(sellQueue.first().getPrice(), price);
         else
             return 0;
     }
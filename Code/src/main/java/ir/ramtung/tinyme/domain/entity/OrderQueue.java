@@ -0,0 +1,193 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import ir.ramtung.tinyme.util.LongLongHashMap;
+import ir.ramtung.tinyme.util.LongObjectHashMap;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * One side of a book: orders grouped into price levels kept in priority order, FIFO inside each level.
+ * The best level is cached so that peeking the head of the queue does not touch the tree, and every queued order
+ * is indexed by its id so that lookups and cancels do not depend on the depth of the book. Queued quantity is also
+ * totalled per shareholder.
+ */
+public class OrderQueue<T extends Order> implements Iterable<T> {
+    private final TreeMap<Long, PriceLevel<T>> levels;
+    private final ToLongFunction<? super T> keyOf;
+    private final LongObjectHashMap<T> ordersById;
+    private final LongLongHashMap quantityByShareholder;
+    private PriceLevel<T> best;
+    private int size;
+    private DepthListener depthListener;
+
+    interface DepthListener {
+        void depthChanged(Side side, long price, long delta);
+    }
+
+    OrderQueue(ToLongFunction<? super T> keyOf, boolean descending) {
+        this.levels = new TreeMap<>(descending ? Comparator.<Long>reverseOrder() : Comparator.<Long>naturalOrder());
+        this.keyOf = keyOf;
+        this.ordersById = new LongObjectHashMap<>();
+        this.quantityByShareholder = new LongLongHashMap();
+        this.best = null;
+        this.size = 0;
+    }
+
+    static OrderQueue<Order> forSide(Side side) {
+        return new OrderQueue<>(Order::getPrice, side == Side.BUY);
+    }
+
+    private PriceLevel<T> levelFor(T order) {
+        long key = keyOf.applyAsLong(order);
+        if (best != null && best.getPrice() == key)
+            return best;
+        PriceLevel<T> level = levels.get(key);
+        if (level == null) {
+            level = new PriceLevel<>(key, this);
+            levels.put(key, level);
+            if (best == null || levels.comparator().compare(key, best.getPrice()) < 0)
+                best = level;
+        }
+        return level;
+    }
+
+    private void dropIfEmpty(PriceLevel<T> level) {
+        if (!level.isEmpty())
+            return;
+        levels.remove(level.getPrice());
+        if (level == best) {
+            var first = levels.firstEntry();
+            best = (first == null) ? null : first.getValue();
+        }
+    }
+
+    public void addLast(T order) {
+        levelFor(order).addLast(order);
+        ordersById.put(order.getOrderId(), order);
+        size++;
+    }
+
+    // builds an empty queue from orders in one pass after a stable sort by priority, so orders keep their given
+    // order within a level and each level is looked up and created once
+    void addAll(List<T> orders) {
+        if (!levels.isEmpty())
+            throw new IllegalStateException("Bulk loading needs an empty queue");
+        Comparator<? super Long> priority = levels.comparator();
+        orders.sort((a, b) -> priority.compare(keyOf.applyAsLong(a), keyOf.applyAsLong(b)));
+        PriceLevel<T> level = null;
+        for (T order : orders) {
+            long key = keyOf.applyAsLong(order);
+            if (level == null || level.getPrice() != key) {
+                level = new PriceLevel<>(key, this);
+                levels.put(key, level);
+            }
+            level.addLast(order);
+            ordersById.put(order.getOrderId(), order);
+            size++;
+        }
+        var first = levels.firstEntry();
+        best = (first == null) ? null : first.getValue();
+    }
+
+    public void addFirst(T order) {
+        levelFor(order).addFirst(order);
+        ordersById.put(order.getOrderId(), order);
+        size++;
+    }
+
+    public T first() {
+        return (best == null) ? null : best.first();
+    }
+
+    public T removeFirst() {
+        if (best == null)
+            throw new NoSuchElementException();
+        PriceLevel<T> level = best;
+        T order = level.removeFirst();
+        if (ordersById.get(order.getOrderId()) == order)
+            ordersById.remove(order.getOrderId());
+        size--;
+        dropIfEmpty(level);
+        return order;
+    }
+
+    public T find(long orderId) {
+        return ordersById.get(orderId);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T remove(long orderId) {
+        T order = ordersById.remove(orderId);
+        if (order == null)
+            return null;
+        PriceLevel<T> level = (PriceLevel<T>) order.level;
+        level.remove(order);
+        size--;
+        dropIfEmpty(level);
+        return order;
+    }
+
+    void setDepthListener(DepthListener depthListener) {
+        this.depthListener = depthListener;
+    }
+
+    void quantityChanged(Order order, long price, long delta) {
+        if (order.getShareholder() != null)
+            quantityByShareholder.addTo(order.getShareholder().getShareholderId(), delta);
+        if (depthListener != null)
+            depthListener.depthChanged(order.getSide(), price, delta);
+    }
+
+    public long totalQuantityOf(Shareholder shareholder) {
+        return quantityByShareholder.get(shareholder.getShareholderId());
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Collection<PriceLevel<T>> levels() {
+        return Collections.unmodifiableCollection(levels.values());
+    }
+
+    public LinkedList<T> toList() {
+        LinkedList<T> orders = new LinkedList<>();
+        for (T order : this)
+            orders.add(order);
+        return orders;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private final Iterator<PriceLevel<T>> levelIterator = levels.values().iterator();
+            private Iterator<T> orderIterator = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!orderIterator.hasNext() && levelIterator.hasNext())
+                    orderIterator = levelIterator.next().iterator();
+                return orderIterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return orderIterator.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,123 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import lombok.Getter;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO of the orders resting at one price. The orders themselves carry the links, so queueing, unlinking and
+ * putting an order back at the head are pointer updates that allocate nothing. Queued quantity is kept up to date
+ * as orders join, leave or change quantity in place.
+ */
+public class PriceLevel<T extends Order> implements Iterable<T> {
+    @Getter
+    private final long price;
+    private final OrderQueue<T> queue;
+    private T head;
+    private T tail;
+    private int size;
+    private long totalQuantity;
+
+    PriceLevel(long price, OrderQueue<T> queue) {
+        this.price = price;
+        this.queue = queue;
+    }
+
+    void quantityChanged(Order order, long delta) {
+        totalQuantity += delta;
+        queue.quantityChanged(order, price, delta);
+    }
+
+    void addLast(T order) {
+        order.level = this;
+        order.previous = tail;
+        order.next = null;
+        if (tail == null)
+            head = order;
+        else
+            tail.next = order;
+        tail = order;
+        size++;
+        quantityChanged(order, order.getTotalQuantity());
+    }
+
+    void addFirst(T order) {
+        order.level = this;
+        order.previous = null;
+        order.next = head;
+        if (head == null)
+            tail = order;
+        else
+            head.previous = order;
+        head = order;
+        size++;
+        quantityChanged(order, order.getTotalQuantity());
+    }
+
+    @SuppressWarnings("unchecked")
+    boolean remove(T order) {
+        if (order.level != this)
+            return false;
+        if (order.previous == null)
+            head = (T) order.next;
+        else
+            order.previous.next = order.next;
+        if (order.next == null)
+            tail = (T) order.previous;
+        else
+            order.next.previous = order.previous;
+        order.level = null;
+        order.previous = null;
+        order.next = null;
+        size--;
+        quantityChanged(order, -order.getTotalQuantity());
+        return true;
+    }
+
+    public T first() {
+        return head;
+    }
+
+    T removeFirst() {
+        if (head == null)
+            throw new NoSuchElementException();
+        T order = head;
+        remove(order);
+        return order;
+    }
+
+    public boolean isEmpty() {
+        return head == null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long totalQuantity() {
+        return totalQuantity;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private Order current = head;
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (current == null)
+                    throw new NoSuchElementException();
+                T order = (T) current;
+                current = current.next;
+                return order;
+            }
+        };
+    }
+}
@@ -7,12 +7,13 @@ import ir.ramtung.tinyme.messaging.Message;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.experimental.SuperBuilder;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 
 @Getter
 @SuperBuilder
@@ -31,11 +32,26 @@ public class Security {
     protected StopLimitOrderBook stopLimitOrderBook = new StopLimitOrderBook();
     @Builder.Default
     protected LinkedList<StopLimitOrder> activatedStopOrder = new LinkedList<>();
+    // the id of a security outside any repository, and of an ISIN that no repository knows
+    public static final int NO_ID = -1;
+    // the id a request carries until its ISIN has been looked up
+    public static final int UNRESOLVED_ID = -2;
+
+    // the directory id of the ISIN, set by the repository the security is added to and shared by the continuous and
+    // auction objects that trade it in turn
+    @Setter
+    @Builder.Default
+    protected int id = NO_ID;
+    // the shareholders that have held a position in the security, so its positions are found without going through
+    // every shareholder; set by the repository along with the id and appended to by the shard that trades the security
+    @Setter
+    protected List<Shareholder> holders;
 
     Security (AuctionSecurity auctionSecurity){
         this(auctionSecurity.getIsin(), auctionSecurity.getTickSize(), auctionSecurity.getLotSize(),
                 auctionSecurity.getOrderBook(), auctionSecurity.getPrice(), auctionSecurity.getStopLimitOrderBook(),
-                auctionSecurity.getActivatedStopOrder());
+                auctionSecurity.getActivatedStopOrder(), auctionSecurity.getId(), auctionSecurity.getHolders());
+        orderBook.stopTrackingDepth();
     }
 
     protected boolean doseShareholderHaveEnoughPositions (Order order ,EnterOrderRq enterOrderRq, Shareholder shareholder ){
@@ -244,11 +260,13 @@ public class Security {
         return true;
     }
 
-    public ArrayList<MatchResult> handleActivation(){
-        LinkedList<StopLimitOrder> newActivatedOrders = stopLimitOrderBook.popActivatedOrders(price);
-        ArrayList<MatchResult> activationResults = new ArrayList<>();
-        activatedStopOrder.addAll(newActivatedOrders);
-        Iterator<StopLimitOrder> iterator = newActivatedOrders.iterator();
+    // nothing is popped unless the price has crossed the nearest buy or sell trigger
+    public List<MatchResult> handleActivation(){
+        if (!stopLimitOrderBook.isTriggeredBy(price))
+            return List.of();
+        int activated = stopLimitOrderBook.popActivatedOrders(price, activatedStopOrder);
+        ArrayList<MatchResult> activationResults = new ArrayList<>(activated);
+        ListIterator<StopLimitOrder> iterator = activatedStopOrder.listIterator(activatedStopOrder.size() - activated);
         while (iterator.hasNext()){
             activationResults.add(MatchResult.stopLimitOrderActivated(iterator.next()));
         }
@@ -265,13 +283,16 @@ public class Security {
         return null;
     }
 
-    public ArrayList<MatchResult> executeActivatedStopOrders(Matcher matcher){
+    // activatedStopOrder is the worklist; orders activated by an execution are appended to it
+    public List<MatchResult> executeActivatedStopOrders(Matcher matcher){
+        if (activatedStopOrder.isEmpty())
+            return List.of();
         ArrayList<MatchResult> executedResults = new ArrayList<>();
         MatchResult temp = executeFirstActivatedOrder(matcher);
         while (temp != null){
-            executedResults.add(temp);
-            ArrayList<MatchResult> newActivated = handleActivation();
-            executedResults.addAll(newActivated);
+            executedResults.add(temp.detach());
+            if (temp.hasTrades())
+                executedResults.addAll(handleActivation());
             temp = executeFirstActivatedOrder(matcher);
         }
         return executedResults;
@@ -5,8 +5,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 @ToString
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
@@ -17,23 +16,68 @@ public class Shareholder {
     private long shareholderId;
     @Getter
     private String name;
-    @Getter
+    // indexed by Security.getId() in fixed-size chunks; growing only copies the chunk references, under the
+    // shareholder's lock, so a slot is always written in place by the one shard that trades its security
     @Builder.Default
-    private Map<Security, Integer> positions = new HashMap<>();
+    private volatile Chunk[] positions = new Chunk[0];
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final class Chunk {
+        private final int[] positions = new int[CHUNK_SIZE];
+        // whether the shareholder is already among the holders of the security
+        private final boolean[] held = new boolean[CHUNK_SIZE];
+    }
+
+    private Chunk chunkOf(Security security) {
+        int securityId = security.getId();
+        if (securityId < 0)
+            throw new IllegalStateException("Security " + security.getIsin() + " has not been added to a repository");
+        int chunk = securityId >>> CHUNK_SHIFT;
+        Chunk[] current = positions;
+        return chunk < current.length ? current[chunk] : grow(chunk);
+    }
+
+    private synchronized Chunk grow(int chunk) {
+        Chunk[] current = positions;
+        if (chunk >= current.length) {
+            Chunk[] grown = Arrays.copyOf(current, Math.max(chunk + 1, 2 * current.length));
+            for (int i = current.length; i < grown.length; i++)
+                grown[i] = new Chunk();
+            positions = current = grown;
+        }
+        return current[chunk];
+    }
 
     public void incPosition(Security security, int amount) {
         assert amount >= 0;
-        positions.put(security, positions.getOrDefault(security, 0) + amount);
+        Chunk chunk = chunkOf(security);
+        int slot = security.getId() & (CHUNK_SIZE - 1);
+        if (!chunk.held[slot]) {
+            chunk.held[slot] = true;
+            security.getHolders().add(this);
+        }
+        chunk.positions[slot] += amount;
     }
 
     public void decPosition(Security security, int amount) {
         assert amount >= 0;
-        int currentPositions = positions.getOrDefault(security, 0);
-        if (currentPositions < amount)
+        Chunk chunk = chunkOf(security);
+        int slot = security.getId() & (CHUNK_SIZE - 1);
+        if (chunk.positions[slot] < amount)
             throw new IllegalArgumentException("Amount to be decreased is greater than shareholder's current position");
-        positions.put(security, currentPositions - amount);
+        chunk.positions[slot] -= amount;
     }
+
+    public int getPosition(Security security) {
+        int securityId = security.getId();
+        int chunk = securityId >>> CHUNK_SHIFT;
+        Chunk[] current = positions;
+        return securityId >= 0 && chunk < current.length ? current[chunk].positions[securityId & (CHUNK_SIZE - 1)] : 0;
+    }
+
     public boolean hasEnoughPositionsOn(Security security, int position) {
-        return positions.getOrDefault(security, 0) >= position;
+        return getPosition(security) >= position;
     }
 }
@@ -75,14 +75,6 @@ public class StopLimitOrder extends Order{
         stopPrice = updateOrderRq.getStopPrice();
     }
 
-    public boolean queuesBefore(StopLimitOrder order) {
-        if (order.getSide() == Side.BUY) {
-            return stopPrice > order.stopPrice;
-        }
-        return stopPrice < order.stopPrice;
-
-    }
-
     public boolean isActivated(long price){
         if (this.side == Side.BUY) {
             return price >= this.stopPrice;
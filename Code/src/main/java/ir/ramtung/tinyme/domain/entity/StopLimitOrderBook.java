@@ -1,85 +1,68 @@
 package ir.ramtung.tinyme.domain.entity;
 
-import ir.ramtung.tinyme.domain.entity.*;
-import lombok.Getter;
-
 import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
 
-@Getter
 public class StopLimitOrderBook{
 
-    private final LinkedList<StopLimitOrder> buyQueue;
-    private final LinkedList<StopLimitOrder> sellQueue;
+    private final OrderQueue<StopLimitOrder> buyQueue;
+    private final OrderQueue<StopLimitOrder> sellQueue;
+
     public StopLimitOrderBook() {
-        buyQueue = new LinkedList<>();
-        sellQueue = new LinkedList<>();
+        buyQueue = new OrderQueue<>(StopLimitOrder::getStopPrice, false);
+        sellQueue = new OrderQueue<>(StopLimitOrder::getStopPrice, true);
+    }
+
+    public LinkedList<StopLimitOrder> getBuyQueue() {
+        return buyQueue.toList();
+    }
+
+    public LinkedList<StopLimitOrder> getSellQueue() {
+        return sellQueue.toList();
     }
 
     public void enqueue(StopLimitOrder order) {
-        List<StopLimitOrder> queue = getQueue(order.getSide());
-        ListIterator<StopLimitOrder> iterator = queue.listIterator();
-        while (iterator.hasNext()) {
-            var next = iterator.next();
-            if (order.queuesBefore(next)) {
-                iterator.previous();
-                break;
-            }
-        }
         order.queue();
-        iterator.add(order);
+        getQueue(order.getSide()).addLast(order);
+    }
+
+    public void restoreQueued(StopLimitOrder order) {
+        getQueue(order.getSide()).addLast(order);
     }
 
-    private LinkedList<StopLimitOrder> getQueue(Side side) {
+    private OrderQueue<StopLimitOrder> getQueue(Side side) {
         return side == Side.BUY ? buyQueue : sellQueue;
     }
 
     public StopLimitOrder findByOrderId(Side side, long orderId) {
-        var queue = getQueue(side);
-        for (StopLimitOrder order : queue) {
-            if (order.getOrderId() == orderId)
-                return order;
-        }
-        return null;
+        return getQueue(side).find(orderId);
     }
 
     public boolean removeByOrderId(Side side, long orderId) {
-        var queue = getQueue(side);
-        var iterator = queue.listIterator();
-        while (iterator.hasNext()) {
-            var next = iterator.next();
-            if (next.getOrderId() == orderId) {
-                iterator.remove();
-                return true;
-            }
-        }
-        return false;
+        return getQueue(side).remove(orderId) != null;
     }
 
-    public LinkedList<StopLimitOrder> handleActivatedOrders(ListIterator<StopLimitOrder> iterator, LinkedList<StopLimitOrder> activatedOrders, long price) {
-        while (iterator.hasNext()) {
-            StopLimitOrder temp = iterator.next();
-            if (temp.isActivated(price)) {
-                activatedOrders.add(temp);
-                iterator.remove();
-            }
-            else
-                break;
-        }
-
-        return activatedOrders;
+    // the heads of the two sides are the nearest buy and sell triggers
+    public boolean isTriggeredBy(long price) {
+        StopLimitOrder nearestBuy = buyQueue.first();
+        if (nearestBuy != null && nearestBuy.isActivated(price))
+            return true;
+        StopLimitOrder nearestSell = sellQueue.first();
+        return nearestSell != null && nearestSell.isActivated(price);
     }
 
-    public LinkedList<StopLimitOrder> popActivatedOrders(long price){
-        LinkedList<StopLimitOrder> activatedOrders = new LinkedList<>();
-        ListIterator<StopLimitOrder> buyIterator = buyQueue.listIterator();
-        ListIterator<StopLimitOrder> sellIterator = sellQueue.listIterator();
-
-        activatedOrders = handleActivatedOrders(buyIterator, activatedOrders, price);
-        activatedOrders = handleActivatedOrders(sellIterator, activatedOrders, price);
+    private void handleActivatedOrders(OrderQueue<StopLimitOrder> queue, LinkedList<StopLimitOrder> activatedOrders, long price) {
+        StopLimitOrder first = queue.first();
+        while (first != null && first.isActivated(price)) {
+            activatedOrders.add(queue.removeFirst());
+            first = queue.first();
+        }
+    }
 
-        return activatedOrders;
+    public int popActivatedOrders(long price, LinkedList<StopLimitOrder> activatedOrders){
+        int before = activatedOrders.size();
+        handleActivatedOrders(buyQueue, activatedOrders, price);
+        handleActivatedOrders(sellQueue, activatedOrders, price);
+        return activatedOrders.size() - before;
     }
 
 }
@@ -1,36 +1,90 @@
 package ir.ramtung.tinyme.domain.entity;
 
-import lombok.Builder;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
-import java.time.LocalDateTime;
-
-@Builder
 @Getter
 @EqualsAndHashCode
 @ToString
 public class Trade {
-    Security security;
+    private Security security;
     private int price;
     private int quantity;
-    private Order buy;
-    private Order sell;
+    private long buyOrderId;
+    private long sellOrderId;
+    private Broker buyBroker;
+    private Broker sellBroker;
+    private Shareholder buyShareholder;
+    private Shareholder sellShareholder;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Order restingOrder;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private int restingQuantity;
 
-    public Trade(Security security, int price, int quantity, Order order1, Order order2) {
+    Trade() {
+    }
+
+    private Trade(Security security, int price, int quantity, Order buy, Order sell, Order restingOrder) {
+        set(security, price, quantity, buy, sell, restingOrder);
+    }
+
+    private Trade(Trade trade) {
+        this.security = trade.security;
+        this.price = trade.price;
+        this.quantity = trade.quantity;
+        this.buyOrderId = trade.buyOrderId;
+        this.sellOrderId = trade.sellOrderId;
+        this.buyBroker = trade.buyBroker;
+        this.sellBroker = trade.sellBroker;
+        this.buyShareholder = trade.buyShareholder;
+        this.sellShareholder = trade.sellShareholder;
+        this.restingOrder = trade.restingOrder;
+        this.restingQuantity = trade.restingQuantity;
+    }
+
+    private Trade set(Security security, int price, int quantity, Order buy, Order sell, Order restingOrder) {
         this.security = security;
         this.price = price;
         this.quantity = quantity;
-        Order snapshot1 = order1.snapshot();
-        Order snapshot2 = order2.snapshot();
-        if (order1.getSide() == Side.BUY) {
-            this.buy = snapshot1;
-            this.sell = snapshot2;
-        } else {
-            this.buy = snapshot2;
-            this.sell = snapshot1;
-        }
+        this.buyOrderId = buy.getOrderId();
+        this.sellOrderId = sell.getOrderId();
+        this.buyBroker = buy.getBroker();
+        this.sellBroker = sell.getBroker();
+        this.buyShareholder = buy.getShareholder();
+        this.sellShareholder = sell.getShareholder();
+        this.restingOrder = restingOrder;
+        this.restingQuantity = (restingOrder == null) ? 0 : restingOrder.getTotalQuantity();
+        return this;
+    }
+
+    public Trade(Security security, int price, int quantity, Order order1, Order order2) {
+        this(security, price, quantity, order1.getSide() == Side.BUY ? order1 : order2,
+                order1.getSide() == Side.BUY ? order2 : order1, null);
+    }
+
+    public static Trade fill(Security security, int price, int quantity, Order newOrder, Order restingOrder) {
+        if (newOrder.getSide() == Side.BUY)
+            return new Trade(security, price, quantity, newOrder, restingOrder, restingOrder);
+        else
+            return new Trade(security, price, quantity, restingOrder, newOrder, restingOrder);
+    }
+
+    // overwrites a trade owned by a TradeBuffer instead of allocating a new one
+    Trade refill(Security security, int price, int quantity, Order newOrder, Order restingOrder) {
+        if (newOrder.getSide() == Side.BUY)
+            return set(security, price, quantity, newOrder, restingOrder, restingOrder);
+        else
+            return set(security, price, quantity, restingOrder, newOrder, restingOrder);
+    }
+
+    public Trade copy() {
+        return new Trade(this);
     }
 
     public long getTradedValue() {
@@ -38,15 +92,21 @@ public class Trade {
     }
 
     public void increaseSellersCredit() {
-        sell.getBroker().increaseCreditBy(getTradedValue());
+        sellBroker.increaseCreditBy(getTradedValue());
     }
 
-    public void decreaseBuyersCredit() {
-        buy.getBroker().decreaseCreditBy(getTradedValue());
+    public boolean tryDecreaseBuyersCredit() {
+        return buyBroker.tryDecreaseCreditBy(getTradedValue());
     }
 
-    public boolean buyerHasEnoughCredit() {
-        return buy.getBroker().hasEnoughCredit(getTradedValue());
+    public void updatePositions() {
+        buyShareholder.incPosition(security, quantity);
+        sellShareholder.decPosition(security, quantity);
     }
 
+    public void restoreRestingOrder(OrderBook orderBook) {
+        if (restingOrder == null)
+            throw new IllegalStateException("Trade does not record the order it was matched against");
+        orderBook.restoreOrder(restingOrder, restingQuantity);
+    }
 }
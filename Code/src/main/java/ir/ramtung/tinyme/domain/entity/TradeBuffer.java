@@ -0,0 +1,54 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Array-backed list of trades meant to be cleared and refilled instead of reallocated. Its backing array only
+ * grows, so once it has reached the largest sweep seen it no longer allocates. Trades taken from {@link #nextFill}
+ * are owned by the buffer and are overwritten by the fills of the next sweep.
+ */
+public class TradeBuffer extends AbstractList<Trade> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;
+    private Trade[] trades = new Trade[INITIAL_CAPACITY];
+    private Trade[] pool = new Trade[INITIAL_CAPACITY];
+    private int size;
+
+    public Trade nextFill(Security security, int price, int quantity, Order newOrder, Order restingOrder) {
+        if (size >= pool.length)
+            pool = Arrays.copyOf(pool, Math.max(size + 1, pool.length << 1));
+        Trade trade = pool[size];
+        if (trade == null)
+            trade = pool[size] = new Trade();
+        return trade.refill(security, price, quantity, newOrder, restingOrder);
+    }
+
+    @Override
+    public boolean add(Trade trade) {
+        if (size == trades.length)
+            trades = Arrays.copyOf(trades, size << 1);
+        trades[size++] = trade;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Trade get(int index) {
+        Objects.checkIndex(index, size);
+        return trades[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(trades, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+}
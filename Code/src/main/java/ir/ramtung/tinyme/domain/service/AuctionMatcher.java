@@ -2,7 +2,7 @@ package ir.ramtung.tinyme.domain.service;
 
 import ir.ramtung.tinyme.domain.entity.*;
 
-import java.util.LinkedList;
+import java.util.List;
 
 public class AuctionMatcher extends Matcher {
 
@@ -12,10 +12,9 @@ public class AuctionMatcher extends Matcher {
         newOrder.getBroker().increaseCreditBy(debtToBroker);
     }
 
-    protected void handleTrade(Order newOrder ,Order matchingOrder ,LinkedList<Trade> trades, int price){
+    protected void handleTrade(Order newOrder ,Order matchingOrder ,List<Trade> trades, int price){
 
-        Trade trade = new Trade(newOrder.getSecurity(), price, Math.min(newOrder.getQuantity(),
-                matchingOrder.getQuantity()), newOrder, matchingOrder);
+        Trade trade = newTrade(newOrder, matchingOrder, price);
 
         if (newOrder.getSide() == Side.BUY) {
             payDebtToBroker(newOrder, trade, price);
@@ -25,7 +24,7 @@ public class AuctionMatcher extends Matcher {
         trades.add(trade);
     }
 
-    protected void matchFirstMatchingOrder(Order newOrder ,OrderBook orderBook ,LinkedList<Trade> trades ,
+    protected void matchFirstMatchingOrder(Order newOrder ,OrderBook orderBook ,List<Trade> trades ,
                                                   Order matchingOrder, int price){
         handleTrade(newOrder ,matchingOrder ,trades, price );
         handleTradeSidesRemainder(newOrder ,matchingOrder ,orderBook);
@@ -34,7 +33,7 @@ public class AuctionMatcher extends Matcher {
 
     public MatchResult match(Order newOrder, int price) {
         OrderBook orderBook = newOrder.getSecurity().getOrderBook();
-        LinkedList<Trade> trades = new LinkedList<>();
+        List<Trade> trades = newTradeList();
 
         while (orderBook.hasOrderOfType(newOrder.getSide().opposite()) && newOrder.getQuantity() > 0) {
             Order matchingOrder = orderBook.matchWithFirst(newOrder);
@@ -43,7 +42,7 @@ public class AuctionMatcher extends Matcher {
             matchFirstMatchingOrder(newOrder ,orderBook ,trades ,matchingOrder, price);
 
         }
-        return MatchResult.executed(newOrder, trades);
+        return executedResult(newOrder, trades);
     }
 
     protected void handleAuctionOrderRemainder(MatchResult result ,Order order){
@@ -1,24 +1,53 @@
 package ir.ramtung.tinyme.domain.service;
 
 import ir.ramtung.tinyme.domain.entity.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.List;
 
 @Service
 public class Matcher {
+    private final ThreadLocal<TradeBuffer> tradeBuffer = ThreadLocal.withInitial(TradeBuffer::new);
+    private final ThreadLocal<MatchResult> resultView = ThreadLocal.withInitial(MatchResult::reusable);
+    // trades and executed results are then reused per thread and only valid until the thread's next match
+    @Value("${allocationFreeMatching:false}")
+    private boolean allocationFree;
+
+    public void setAllocationFree(boolean allocationFree) {
+        this.allocationFree = allocationFree;
+    }
+
+    public boolean isAllocationFree() {
+        return allocationFree;
+    }
 
-    protected MatchResult handleTrade(Order newOrder ,Order matchingOrder ,LinkedList<Trade> trades){
+    // fills are collected in a per-thread scratch buffer; only an executed match copies them into its result
+    protected List<Trade> newTradeList() {
+        TradeBuffer trades = tradeBuffer.get();
+        trades.clear();
+        return trades;
+    }
 
-        Trade trade = new Trade(newOrder.getSecurity(), matchingOrder.getPrice(), Math.min(newOrder.getQuantity(),
-                matchingOrder.getQuantity()), newOrder, matchingOrder);
+    protected MatchResult executedResult(Order remainder, List<Trade> trades) {
+        if (allocationFree)
+            return resultView.get().reuseAs(MatchingOutcome.EXECUTED, remainder, trades);
+        return MatchResult.executed(remainder, List.copyOf(trades));
+    }
+
+    protected Trade newTrade(Order newOrder ,Order matchingOrder ,int price){
+        int quantity = Math.min(newOrder.getQuantity(), matchingOrder.getQuantity());
+        if (allocationFree)
+            return tradeBuffer.get().nextFill(newOrder.getSecurity(), price, quantity, newOrder, matchingOrder);
+        return Trade.fill(newOrder.getSecurity(), price, quantity, newOrder, matchingOrder);
+    }
+
+    protected MatchResult handleTrade(Order newOrder ,Order matchingOrder ,List<Trade> trades){
+
+        Trade trade = newTrade(newOrder, matchingOrder, matchingOrder.getPrice());
 
         if (newOrder.getSide() == Side.BUY) {
-            if (trade.buyerHasEnoughCredit())
-                trade.decreaseBuyersCredit();
-            else {
+            if (!trade.tryDecreaseBuyersCredit()) {
                 rollbackTrades(newOrder, trades);
                 return MatchResult.notEnoughCredit();
             }
@@ -57,7 +86,7 @@ public class Matcher {
             handleMatchingOrderHasRemainderSituation(newOrder ,matchingOrder ,orderBook );
     }
 
-    protected MatchResult matchFirstMatchingOrder(Order newOrder ,OrderBook orderBook ,LinkedList<Trade> trades ,
+    protected MatchResult matchFirstMatchingOrder(Order newOrder ,OrderBook orderBook ,List<Trade> trades ,
                                                 Order matchingOrder){
         MatchResult tradeResult = handleTrade(newOrder ,matchingOrder ,trades );
         if (tradeResult != null)
@@ -70,7 +99,7 @@ public class Matcher {
 
     public MatchResult match(Order newOrder) {
         OrderBook orderBook = newOrder.getSecurity().getOrderBook();
-        LinkedList<Trade> trades = new LinkedList<>();
+        List<Trade> trades = newTradeList();
 
         while (orderBook.hasOrderOfType(newOrder.getSide().opposite()) && newOrder.getQuantity() > 0) {
             Order matchingOrder = orderBook.matchWithFirst(newOrder);
@@ -84,40 +113,46 @@ public class Matcher {
             rollbackTrades(newOrder, trades);
             return MatchResult.minExecQuantityHaveNotMet();
         }
-        return MatchResult.executed(newOrder, trades);
+        return executedResult(newOrder, trades);
+    }
+
+    private long totalTradedValue(List<Trade> trades) {
+        long total = 0;
+        for (int i = 0; i < trades.size(); i++)
+            total += trades.get(i).getTradedValue();
+        return total;
     }
 
-    protected void rollbackBuyOrder(Order newOrder, LinkedList<Trade> trades, ListIterator<Trade> it){
-        newOrder.getBroker().increaseCreditBy(trades.stream().mapToLong(Trade::getTradedValue).sum());
-        trades.forEach(trade -> trade.getSell().getBroker().decreaseCreditBy(trade.getTradedValue()));
+    protected void rollbackBuyOrder(Order newOrder, List<Trade> trades){
+        newOrder.getBroker().increaseCreditBy(totalTradedValue(trades));
+        for (int i = 0; i < trades.size(); i++)
+            trades.get(i).getSellBroker().decreaseCreditBy(trades.get(i).getTradedValue());
 
-        while (it.hasPrevious()) {
-            newOrder.getSecurity().getOrderBook().restoreOrder(it.previous().getSell());
+        for (int i = trades.size() - 1; i >= 0; i--) {
+            trades.get(i).restoreRestingOrder(newOrder.getSecurity().getOrderBook());
         }
     }
 
-    protected void rollbackSellOrder(Order newOrder, LinkedList<Trade> trades, ListIterator<Trade> it){
-        newOrder.getBroker().decreaseCreditBy(trades.stream().mapToLong(Trade::getTradedValue).sum());
+    protected void rollbackSellOrder(Order newOrder, List<Trade> trades){
+        newOrder.getBroker().decreaseCreditBy(totalTradedValue(trades));
 
-        while (it.hasPrevious()) {
-            newOrder.getSecurity().getOrderBook().restoreOrder(it.previous().getBuy());
+        for (int i = trades.size() - 1; i >= 0; i--) {
+            trades.get(i).restoreRestingOrder(newOrder.getSecurity().getOrderBook());
         }
 
     }
-    protected void rollbackTrades(Order newOrder, LinkedList<Trade> trades) {
-        ListIterator<Trade> it = trades.listIterator(trades.size());
+    protected void rollbackTrades(Order newOrder, List<Trade> trades) {
         if (newOrder.getSide() == Side.BUY)
-            rollbackBuyOrder(newOrder, trades, it);
+            rollbackBuyOrder(newOrder, trades);
         else
-            rollbackSellOrder(newOrder, trades, it);
+            rollbackSellOrder(newOrder, trades);
     }
 
     protected MatchResult handleOrderRemainderCredit(MatchResult result ,Order order){
-        if (!order.getBroker().hasEnoughCredit(order.getValue())) {
+        if (!order.getBroker().tryDecreaseCreditBy(order.getValue())) {
             rollbackTrades(order, result.trades());
             return MatchResult.notEnoughCredit();
         }
-        order.getBroker().decreaseCreditBy(order.getValue());
         return null;
     }
 
@@ -134,17 +169,14 @@ public class Matcher {
     }
 
     protected void handleTradesPossitions(MatchResult result){
-        if (!result.trades().isEmpty()) {
-            for (Trade trade : result.trades()) {
-                trade.getBuy().getShareholder().incPosition(trade.getSecurity(), trade.getQuantity());
-                trade.getSell().getShareholder().decPosition(trade.getSecurity(), trade.getQuantity());
-            }
-        }
+        List<Trade> trades = result.trades();
+        for (int i = 0; i < trades.size(); i++)
+            trades.get(i).updatePositions();
     }
 
     protected void updateSecurityPrice(MatchResult result){
-        if (!result.getTrades().isEmpty())
-            result.remainder().getSecurity().updatePrice(result.getTrades().getLast().getPrice());
+        if (result.hasTrades())
+            result.remainder().getSecurity().updatePrice(result.lastTrade().getPrice());
     }
 
     public MatchResult execute(Order order) {
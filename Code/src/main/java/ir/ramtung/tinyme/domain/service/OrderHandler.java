@@ -1,6 +1,7 @@
 package ir.ramtung.tinyme.domain.service;
 
 import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.journal.RequestJournal;
 import ir.ramtung.tinyme.messaging.Message;
 import ir.ramtung.tinyme.messaging.exception.InvalidRequestException;
 import ir.ramtung.tinyme.messaging.EventPublisher;
@@ -13,12 +14,15 @@ import ir.ramtung.tinyme.messaging.request.OrderEntryType;
 import ir.ramtung.tinyme.repository.BrokerRepository;
 import ir.ramtung.tinyme.repository.SecurityRepository;
 import ir.ramtung.tinyme.repository.ShareholderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,13 +32,23 @@ public class OrderHandler {
     ShareholderRepository shareholderRepository;
     EventPublisher eventPublisher;
     Matcher matcher;
+    RequestJournal requestJournal;
+    private final StampedLock stateLock = new StampedLock();
+    // set once, before requests arrive, by the snapshot store; without it requests take no lock and mark nothing
+    private volatile boolean tracksChanges;
 
-    public OrderHandler(SecurityRepository securityRepository, BrokerRepository brokerRepository, ShareholderRepository shareholderRepository, EventPublisher eventPublisher, Matcher matcher) {
+    @Autowired
+    public OrderHandler(SecurityRepository securityRepository, BrokerRepository brokerRepository, ShareholderRepository shareholderRepository, EventPublisher eventPublisher, Matcher matcher, RequestJournal requestJournal) {
         this.securityRepository = securityRepository;
         this.brokerRepository = brokerRepository;
         this.shareholderRepository = shareholderRepository;
         this.eventPublisher = eventPublisher;
         this.matcher = matcher;
+        this.requestJournal = requestJournal;
+    }
+
+    public OrderHandler(SecurityRepository securityRepository, BrokerRepository brokerRepository, ShareholderRepository shareholderRepository, EventPublisher eventPublisher, Matcher matcher) {
+        this(securityRepository, brokerRepository, shareholderRepository, eventPublisher, matcher, RequestJournal.disabled());
     }
 
     private List<String> stopLimitRequestErrors (EnterOrderRq enterOrderRq){
@@ -76,10 +90,10 @@ public class OrderHandler {
         return  errors;
     }
 
-    private List<String> elementsFindingErrors(EnterOrderRq enterOrderRq){
+    private List<String> elementsFindingErrors(EnterOrderRq enterOrderRq, Security security, Broker broker,
+                                               Shareholder shareholder){
         List<String> errors = new LinkedList<>();
 
-        Security security = securityRepository.findSecurityByIsin(enterOrderRq.getSecurityIsin());
         if (security == null)
             errors.add(Message.UNKNOWN_SECURITY_ISIN);
         else {
@@ -88,9 +102,9 @@ public class OrderHandler {
             if (enterOrderRq.getPrice() % security.getTickSize() != 0)
                 errors.add(Message.PRICE_NOT_MULTIPLE_OF_TICK_SIZE);
         }
-        if (brokerRepository.findBrokerById(enterOrderRq.getBrokerId()) == null)
+        if (broker == null)
             errors.add(Message.UNKNOWN_BROKER_ID);
-        if (shareholderRepository.findShareholderById(enterOrderRq.getShareholderId()) == null)
+        if (shareholder == null)
             errors.add(Message.UNKNOWN_SHAREHOLDER_ID);
         if ((security instanceof AuctionSecurity) && (enterOrderRq.getMinimumExecutionQuantity() != 0)) {
             errors.add(Message.AUCTION_ORDER_CANNOT_HAVE_MIN_EXEC_QUANTITY);
@@ -102,13 +116,14 @@ public class OrderHandler {
         return errors ;
     }
 
-    private void    validateEnterOrderRq(EnterOrderRq enterOrderRq) throws InvalidRequestException {
+    private void    validateEnterOrderRq(EnterOrderRq enterOrderRq, Security security, Broker broker,
+                                         Shareholder shareholder) throws InvalidRequestException {
         List<String> errors = new LinkedList<>();
 
         errors.addAll(stopLimitRequestErrors(enterOrderRq));
         errors.addAll(iceburgOrdersErrors(enterOrderRq));
         errors.addAll(normalOrdersErrors(enterOrderRq));
-        errors.addAll(elementsFindingErrors(enterOrderRq));
+        errors.addAll(elementsFindingErrors(enterOrderRq, security, broker, shareholder));
 
         if (!errors.isEmpty())
             throw new InvalidRequestException(errors);
@@ -170,7 +185,7 @@ public class OrderHandler {
 
     }
 
-    private void publishActivations(ArrayList<MatchResult> activationResults){
+    private void publishActivations(List<MatchResult> activationResults){
         Iterator<MatchResult> it = activationResults.iterator();
         while (it.hasNext()){
             StopLimitOrder temp = (StopLimitOrder) it.next().getRemainder();
@@ -178,7 +193,7 @@ public class OrderHandler {
         }
     }
 
-    public void publishActivatedOrdersExecution (ArrayList<MatchResult> activatedOrdersExecutionResults){
+    public void publishActivatedOrdersExecution (List<MatchResult> activatedOrdersExecutionResults){
         Iterator<MatchResult> it = activatedOrdersExecutionResults.iterator();
         while (it.hasNext()){
             MatchResult matchResult = it.next();
@@ -191,50 +206,76 @@ public class OrderHandler {
         }
     }
 
-    private void resultsPublisher(MatchResult matchResult, EnterOrderRq enterOrderRq,
-                                  ArrayList<MatchResult> activationResults,
-                                  ArrayList<MatchResult> activatedOrdersExecutionResults){
+    private boolean requestResultPublisher(MatchResult matchResult, EnterOrderRq enterOrderRq){
         if (isRejectEventPublished(enterOrderRq ,matchResult))
-            return;
+            return false;
         orderSituationPublisher(enterOrderRq, matchResult);
+        return true;
+    }
+
+    private void activationResultsPublisher(List<MatchResult> activationResults,
+                                            List<MatchResult> activatedOrdersExecutionResults){
         publishActivations(activationResults);
         publishActivatedOrdersExecution(activatedOrdersExecutionResults);
-
     }
 
     public void handleEnterOrder(EnterOrderRq enterOrderRq) {
+        handle(enterOrderRq, securityRepository.resolve(enterOrderRq), () -> enterOrder(enterOrderRq));
+    }
+
+    private void handle(Object request, int securityId, Runnable handling) {
+        if (!tracksChanges) {
+            requestJournal.appendAndHandle(request, handling);
+            return;
+        }
+        long stamp = stateLock.readLock();
         try {
-            //TODO:validations must be updated
-            validateEnterOrderRq(enterOrderRq);
+            securityRepository.markChanged(securityId);
+            requestJournal.appendAndHandle(request, handling);
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
 
-            Security security = securityRepository.findSecurityByIsin(enterOrderRq.getSecurityIsin());
+    private void enterOrder(EnterOrderRq enterOrderRq) {
+        try {
+            Security security = securityRepository.findSecurityById(enterOrderRq.getSecurityId());
             Broker broker = brokerRepository.findBrokerById(enterOrderRq.getBrokerId());
             Shareholder shareholder = shareholderRepository.findShareholderById(enterOrderRq.getShareholderId());
+            //TODO:validations must be updated
+            validateEnterOrderRq(enterOrderRq, security, broker, shareholder);
 
             MatchResult matchResult = executeRequest(enterOrderRq ,security ,broker ,shareholder);
-            ArrayList<MatchResult> activationResults = security.handleActivation();
-            ArrayList<MatchResult> activatedOrdersExecutionResults = security.executeActivatedStopOrders(matcher);
+            // the result may be the matcher's reusable view, so it is published before stop orders are matched
+            boolean accepted = requestResultPublisher(matchResult, enterOrderRq);
+            List<MatchResult> activationResults = security.handleActivation();
+            List<MatchResult> activatedOrdersExecutionResults = security.executeActivatedStopOrders(matcher);
 
-            resultsPublisher(matchResult, enterOrderRq, activationResults, activatedOrdersExecutionResults);
+            if (accepted)
+                activationResultsPublisher(activationResults, activatedOrdersExecutionResults);
         } catch (InvalidRequestException ex) {
             eventPublisher.publish(new OrderRejectedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), ex.getReasons()));
         }
     }
 
-    private void validateDeleteOrderRq(DeleteOrderRq deleteOrderRq) throws InvalidRequestException {
+    private void validateDeleteOrderRq(DeleteOrderRq deleteOrderRq, Security security) throws InvalidRequestException {
         List<String> errors = new LinkedList<>();
         if (deleteOrderRq.getOrderId() <= 0)
             errors.add(Message.INVALID_ORDER_ID);
-        if (securityRepository.findSecurityByIsin(deleteOrderRq.getSecurityIsin()) == null)
+        if (security == null)
             errors.add(Message.UNKNOWN_SECURITY_ISIN);
         if (!errors.isEmpty())
             throw new InvalidRequestException(errors);
     }
 
     public void handleDeleteOrder(DeleteOrderRq deleteOrderRq) {
+        handle(deleteOrderRq, securityRepository.resolve(deleteOrderRq), () -> deleteOrder(deleteOrderRq));
+    }
+
+    private void deleteOrder(DeleteOrderRq deleteOrderRq) {
         try {
-            validateDeleteOrderRq(deleteOrderRq);
-            Security security = securityRepository.findSecurityByIsin(deleteOrderRq.getSecurityIsin());
+            Security security = securityRepository.findSecurityById(deleteOrderRq.getSecurityId());
+            validateDeleteOrderRq(deleteOrderRq, security);
             if (security instanceof AuctionSecurity auctionSecurity) {
                 MatchResult deleteResult = auctionSecurity.deleteAuctionOrder(deleteOrderRq);
                 eventPublisher.publish(new OrderDeletedEvent(deleteOrderRq.getRequestId(), deleteOrderRq.getOrderId()));
@@ -258,7 +299,7 @@ public class OrderHandler {
         if(changeSecurityResult.getChangingResult() == SecurityChangingResult.VIRTUAL) {
             for (MatchResult auctionOpeningMatchResult : auctionOpeningMatchResults) {
                 for (Trade trade : auctionOpeningMatchResult.getTrades()) {
-                    eventPublisher.publish(new TradeEvent(trade.getSecurity().getIsin(), trade.getPrice(), trade.getQuantity(), trade.getBuy().getOrderId(), trade.getSell().getOrderId()));
+                    eventPublisher.publish(new TradeEvent(trade.getSecurity().getIsin(), trade.getPrice(), trade.getQuantity(), trade.getBuyOrderId(), trade.getSellOrderId()));
                 }
             }
         }
@@ -290,6 +331,31 @@ public class OrderHandler {
     }
 
     public void handleChangeMatchingState(ChangeMatchingStateRq changeMatchingStateRq){
+        handle(changeMatchingStateRq, securityRepository.findSecurityId(changeMatchingStateRq.getSecurityIsin()),
+                () -> changeMatchingState(changeMatchingStateRq));
+    }
+
+    /**
+     * Makes every request mark its security changed in {@link SecurityRepository} and hold off {@link #whileIdle},
+     * which snapshots need and nothing else does. Must be called before requests are handled.
+     */
+    public void trackChanges() {
+        tracksChanges = true;
+    }
+
+    // runs the action while no request is being handled, so it sees the state right after the last journaled request
+    public <T> T whileIdle(Supplier<T> action) {
+        if (!tracksChanges)
+            throw new IllegalStateException("Requests are only held off while changes are tracked");
+        long stamp = stateLock.writeLock();
+        try {
+            return action.get();
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    private void changeMatchingState(ChangeMatchingStateRq changeMatchingStateRq){
         //TODO:may need validations .
         Security security = securityRepository.findSecurityByIsin(changeMatchingStateRq.getSecurityIsin());
         if (security == null) {
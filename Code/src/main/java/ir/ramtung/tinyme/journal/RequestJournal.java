@@ -0,0 +1,290 @@
+package ir.ramtung.tinyme.journal;
+
+import ir.ramtung.tinyme.messaging.BinaryCodec;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead journal of the requests handed to the matching engine, enabled by setting {@code journalDir}.
+ * Records are appended in {@link BinaryCodec} form to memory-mapped segment files of {@code journalSegmentSize}
+ * bytes, so an append is a copy into the page cache and survives a crash of the process. A flusher forces the
+ * written part of the current segment to disk every {@code journalFlushMillis}, committing all the records
+ * appended in that interval together.
+ * <p>
+ * A record is its payload length, a CRC32C of the sequence number and payload, the sequence number, and the
+ * payload. The length is written last, and the zero length that follows the last record ends a segment, so
+ * {@link #replay} stops at the first torn or missing record. Segment files are named after the sequence number
+ * of their first record.
+ * <p>
+ * Replay runs the journaled requests one at a time, so it reproduces the books only if they were handled in journal
+ * order. {@link #appendAndHandle} appends and handles a request under the journal's lock to keep that order, and the
+ * journal refuses to start along with {@code matchingShards}: shards handle requests in parallel and draw on shared
+ * broker credit in an order that no single journal records.
+ */
+@Component
+public class RequestJournal {
+    static final int HEADER_SIZE = 16;
+    private static final String SUFFIX = ".journal";
+
+    private final Logger log = Logger.getLogger(this.getClass().getName());
+    private final Path directory;
+    private final int segmentSize;
+    private final long flushMillis;
+    private final CRC32C crc = new CRC32C();
+    private MappedByteBuffer segment;
+    private long nextSequence = 1;
+    private boolean recovered;
+    private volatile boolean replaying;
+    private volatile boolean dirty;
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public RequestJournal(@Value("${journalDir:}") String directory,
+                          @Value("${journalSegmentSize:67108864}") int segmentSize,
+                          @Value("${journalFlushMillis:5}") long flushMillis,
+                          @Value("${matchingShards:0}") int matchingShards) {
+        this.directory = directory.isEmpty() ? null : Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.flushMillis = flushMillis;
+        if (this.directory != null && matchingShards > 0)
+            throw new IllegalStateException("journalDir cannot be combined with matchingShards > 0, "
+                    + "as the journal could not be replayed in the order the shards handled the requests");
+    }
+
+    public RequestJournal(String directory, int segmentSize, long flushMillis) {
+        this(directory, segmentSize, flushMillis, 0);
+    }
+
+    public static RequestJournal disabled() {
+        return new RequestJournal("", 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    public synchronized void append(Object request) {
+        if (directory == null || replaying)
+            return;
+        try {
+            if (!recovered)
+                recover();
+            if (segment == null)
+                openSegment();
+            if (!tryAppend(request)) {
+                rollSegment();
+                if (!tryAppend(request))
+                    throw new IllegalStateException("Request does not fit in a journal segment: " + request);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        nextSequence++;
+        dirty = true;
+    }
+
+    public void appendAndHandle(Object request, Runnable handling) {
+        if (directory == null) {
+            handling.run();
+            return;
+        }
+        synchronized (this) {
+            append(request);
+            handling.run();
+        }
+    }
+
+    private boolean tryAppend(Object request) {
+        int start = segment.position();
+        if (segment.remaining() <= HEADER_SIZE)
+            return false;
+        try {
+            segment.position(start + HEADER_SIZE);
+            BinaryCodec.encode(request, segment);
+            if (segment.remaining() < Integer.BYTES)
+                throw new BufferOverflowException();
+        } catch (BufferOverflowException ex) {
+            segment.position(start);
+            return false;
+        }
+        int length = segment.position() - start - HEADER_SIZE;
+        segment.putLong(start + 8, nextSequence);
+        segment.putInt(start + 4, checksum(segment, start, length));
+        segment.putInt(start, length);
+        return true;
+    }
+
+    private int checksum(ByteBuffer buffer, int start, int length) {
+        crc.reset();
+        crc.update(buffer.slice(start + 8, length + 8));
+        return (int) crc.getValue();
+    }
+
+    public long replay(Consumer<Object> handler) {
+        return replay(0, handler);
+    }
+
+    /**
+     * Hands every intact journaled request after {@code afterSequence}, oldest first, to {@code handler}. Requests
+     * handled meanwhile are not journaled again. Appending afterwards starts a new segment.
+     */
+    public synchronized long replay(long afterSequence, Consumer<Object> handler) {
+        if (directory == null)
+            return 0;
+        nextSequence = Math.max(nextSequence, afterSequence + 1);
+        replaying = true;
+        long replayed = 0;
+        try {
+            for (Path path : segmentFiles()) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                            .order(ByteOrder.LITTLE_ENDIAN);
+                    while (buffer.remaining() > HEADER_SIZE) {
+                        int start = buffer.position();
+                        int length = buffer.getInt(start);
+                        if (length <= 0 || length > buffer.remaining() - HEADER_SIZE
+                                || buffer.getInt(start + 4) != checksum(buffer, start, length))
+                            break;
+                        long sequence = buffer.getLong(start + 8);
+                        if (sequence > afterSequence) {
+                            if (handler != null)
+                                handler.accept(BinaryCodec.decode(buffer.slice(start + HEADER_SIZE, length)
+                                        .order(ByteOrder.LITTLE_ENDIAN)));
+                            nextSequence = sequence + 1;
+                            replayed++;
+                        }
+                        buffer.position(start + HEADER_SIZE + length);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            replaying = false;
+        }
+        recovered = true;
+        segment = null;
+        if (handler != null)
+            log.info("Replayed " + replayed + " journaled requests");
+        return replayed;
+    }
+
+    private void recover() {
+        replay(null);
+    }
+
+    public synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Deletes all segments, once the state they describe has been saved elsewhere. Sequence numbers continue.
+     */
+    public synchronized void truncate() {
+        if (directory == null)
+            return;
+        flush();
+        segment = null;
+        try {
+            for (Path path : segmentFiles())
+                Files.delete(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        recovered = true;
+    }
+
+    /**
+     * Deletes the segments holding only requests up to {@code sequence}, once a snapshot covers them.
+     */
+    public synchronized void discardThrough(long sequence) {
+        if (directory == null)
+            return;
+        try {
+            List<Path> segments = segmentFiles();
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                if (firstSequenceOf(segments.get(i + 1)) > sequence + 1)
+                    break;
+                Files.delete(segments.get(i));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        if (!Files.isDirectory(directory))
+            return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Files.createDirectories(directory);
+        Path path = directory.resolve(String.format("%020d%s", nextSequence, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        if (flusher == null && flushMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        segment.force();
+        openSegment();
+    }
+
+    public void flush() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            if (!dirty || segment == null)
+                return;
+            dirty = false;
+            current = segment;
+        }
+        current.force();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null)
+            flusher.shutdown();
+        flush();
+    }
+}
@@ -0,0 +1,208 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.messaging.event.Event;
+import ir.ramtung.tinyme.messaging.event.OrderRejectedEvent;
+import ir.ramtung.tinyme.messaging.request.ChangeMatchingStateRq;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.JmsException;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Batch-consumption alternative to the {@link RequestDispatcher} listeners, enabled with {@code requestBatchSize > 0}.
+ * A single consumer without selectors drains up to that many requests per cycle from one transacted session,
+ * handles them in arrival order by their type, and commits once per batch. While the batch is handled, the events
+ * published on this thread are sent through the same session (see {@link EventPublisher#bindSession}), so the
+ * acknowledgements and the events they caused are committed together. With {@code asyncPublishing} or
+ * {@code requestPipeline} on, events go through the publish stage instead and are sent independently of the batch.
+ * Requests bypass the request pipeline, and one that fails is rejected with {@code REQUEST_FAILED}. While this
+ * consumer is enabled the request listeners are never started (see {@link MessagingConfig}).
+ * <p>
+ * With {@code matchingShards > 0} and the request pipeline off, this consumer replaces the listeners even if
+ * {@code requestBatchSize} is not set, taking batches of {@value #SHARDED_BATCH_SIZE}. Each request of a batch is
+ * handed to its {@link MatchingShards shard} without waiting, and the batch is committed once all of them have run,
+ * so the shards match in parallel while no message is acknowledged before its request is handled. Events published
+ * on the shard threads are sent independently of the batch.
+ * <p>
+ * A messaging failure rolls the batch back for redelivery, but the requests handled so far have already changed the
+ * books. Their messages are remembered as in doubt along with the events they published through the session, and
+ * when the broker redelivers them only those events are sent again; the requests are not handled a second time.
+ */
+@Component
+public class BatchRequestConsumer {
+    private static final long RECEIVE_TIMEOUT_MILLIS = 100;
+    private static final int IN_DOUBT_LIMIT = 65_536;
+    static final int SHARDED_BATCH_SIZE = 256;
+
+    private final Logger log = Logger.getLogger(this.getClass().getName());
+    private final ConnectionFactory connectionFactory;
+    private final MessageConverter messageConverter;
+    private final OrderHandler orderHandler;
+    private final MatchingShards matchingShards;
+    private final EventPublisher eventPublisher;
+    private final int batchSize;
+    @Value("${requestQueue}")
+    private String requestQueue;
+    private volatile boolean running;
+    private Thread thread;
+    // messages of rolled-back batches that were already handled, by message id, with the events they published
+    private final Map<String, List<Event>> inDoubt = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<Event>> eldest) {
+            return size() > IN_DOUBT_LIMIT;
+        }
+    };
+
+    public BatchRequestConsumer(ConnectionFactory connectionFactory, MessageConverter messageConverter,
+                                OrderHandler orderHandler, MatchingShards matchingShards, EventPublisher eventPublisher,
+                                @Value("${requestBatchSize:0}") int batchSize,
+                                @Value("${requestPipeline:false}") boolean requestPipeline) {
+        this.connectionFactory = connectionFactory;
+        this.messageConverter = messageConverter;
+        this.orderHandler = orderHandler;
+        this.matchingShards = matchingShards;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = effectiveBatchSize(batchSize, matchingShards.shardCount(), requestPipeline);
+    }
+
+    static int effectiveBatchSize(int batchSize, int shardCount, boolean requestPipeline) {
+        if (batchSize <= 0 && shardCount > 0 && !requestPipeline)
+            return SHARDED_BATCH_SIZE;
+        return batchSize;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void start() {
+        if (batchSize <= 0 || thread != null)
+            return;
+        running = true;
+        thread = new Thread(this::consume, "batch-request-consumer");
+        thread.start();
+    }
+
+    private void consume() {
+        while (running) {
+            Connection connection = null;
+            try {
+                connection = connectionFactory.createConnection();
+                Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+                MessageConsumer consumer = session.createConsumer(session.createQueue(requestQueue));
+                connection.start();
+                while (running)
+                    consumeBatch(session, consumer);
+            } catch (JMSException | JmsException ex) {
+                log.log(Level.SEVERE, "Batch consumer lost its session, reconnecting", ex);
+                pause();
+            } finally {
+                JmsUtils.closeConnection(connection);
+            }
+        }
+    }
+
+    void consumeBatch(Session session, MessageConsumer consumer) throws JMSException {
+        Message message = consumer.receive(RECEIVE_TIMEOUT_MILLIS);
+        if (message == null)
+            return;
+        List<Event> published = new ArrayList<>();
+        Map<String, List<Event>> handled = new LinkedHashMap<>();
+        List<Future<Void>> pending = new ArrayList<>();
+        eventPublisher.bindSession(session, published);
+        try {
+            int received = 0;
+            while (message != null) {
+                int firstEvent = published.size();
+                try {
+                    handle(message, pending);
+                } finally {
+                    handled.put(message.getJMSMessageID(),
+                            List.copyOf(published.subList(firstEvent, published.size())));
+                }
+                if (++received == batchSize)
+                    break;
+                message = consumer.receiveNoWait();
+            }
+            matchingShards.awaitAll(pending);
+            session.commit();
+            handled.keySet().forEach(inDoubt::remove);
+        } catch (JMSException | JmsException ex) {
+            inDoubt.putAll(handled);
+            JmsUtils.rollbackIfNecessary(session);
+            throw ex;
+        } finally {
+            eventPublisher.unbindSession();
+        }
+    }
+
+    private void handle(Message message, List<Future<Void>> pending) throws JMSException {
+        if (message.getJMSRedelivered()) {
+            List<Event> events = inDoubt.get(message.getJMSMessageID());
+            if (events != null) {
+                events.forEach(eventPublisher::publish);
+                return;
+            }
+        }
+        Object request;
+        try {
+            request = messageConverter.fromMessage(message);
+        } catch (MessageConversionException ex) {
+            log.log(Level.SEVERE, "Dropped request that could not be converted", ex);
+            return;
+        }
+        if (request instanceof EnterOrderRq enterOrderRq)
+            pending.add(matchingShards.submit(enterOrderRq.getSecurityIsin(),
+                    () -> orderHandler.handleEnterOrder(enterOrderRq),
+                    ex -> reject(enterOrderRq.getRequestId(), enterOrderRq.getOrderId())));
+        else if (request instanceof DeleteOrderRq deleteOrderRq)
+            pending.add(matchingShards.submit(deleteOrderRq.getSecurityIsin(),
+                    () -> orderHandler.handleDeleteOrder(deleteOrderRq),
+                    ex -> reject(deleteOrderRq.getRequestId(), deleteOrderRq.getOrderId())));
+        else if (request instanceof ChangeMatchingStateRq changeMatchingStateRq)
+            pending.add(matchingShards.submit(changeMatchingStateRq.getSecurityIsin(),
+                    () -> orderHandler.handleChangeMatchingState(changeMatchingStateRq),
+                    ex -> reject(changeMatchingStateRq.getRequestId(), OrderRejectedEvent.NO_ORDER_ID)));
+        else
+            log.warning("Dropped request of unsupported type " + request.getClass().getName());
+    }
+
+    private void reject(long requestId, long orderId) {
+        eventPublisher.publish(new OrderRejectedEvent(requestId, orderId, List.of(ir.ramtung.tinyme.messaging.Message.REQUEST_FAILED)));
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null)
+            thread.join(10_000);
+    }
+}
@@ -0,0 +1,279 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.messaging.event.*;
+import ir.ramtung.tinyme.messaging.request.ChangeMatchingStateRq;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.messaging.request.MatchingState;
+import ir.ramtung.tinyme.messaging.request.OrderEntryType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-layout binary encoding of requests and events. A message starts with a template id and a version byte,
+ * followed by the fixed-size fields of its type at fixed offsets and then its variable-size fields (strings and
+ * lists), each prefixed by its length. Enums are written as ordinals and times as UTC epoch seconds plus nanos.
+ * All numbers are little-endian.
+ */
+public final class BinaryCodec {
+    static final byte VERSION = 1;
+
+    static final byte ENTER_ORDER_RQ = 1;
+    static final byte DELETE_ORDER_RQ = 2;
+    static final byte CHANGE_MATCHING_STATE_RQ = 3;
+    static final byte ORDER_ACCEPTED = 10;
+    static final byte ORDER_UPDATED = 11;
+    static final byte ORDER_DELETED = 12;
+    static final byte ORDER_ACTIVATED = 13;
+    static final byte ORDER_REJECTED = 14;
+    static final byte ORDER_EXECUTED = 15;
+    static final byte TRADE = 16;
+    static final byte OPENING_PRICE = 17;
+    static final byte SECURITY_STATE_CHANGED = 18;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private BinaryCodec() {
+    }
+
+    public static void encode(Object message, ByteBuffer buffer) {
+        if (message instanceof EnterOrderRq rq) {
+            header(buffer, ENTER_ORDER_RQ);
+            putEnum(buffer, rq.getRequestType());
+            buffer.putLong(rq.getRequestId());
+            buffer.putLong(rq.getOrderId());
+            putTime(buffer, rq.getEntryTime());
+            putEnum(buffer, rq.getSide());
+            buffer.putInt(rq.getQuantity());
+            buffer.putInt(rq.getPrice());
+            buffer.putLong(rq.getBrokerId());
+            buffer.putLong(rq.getShareholderId());
+            buffer.putInt(rq.getPeakSize());
+            buffer.putLong(rq.getMinimumExecutionQuantity());
+            buffer.putLong(rq.getStopPrice());
+            putString(buffer, rq.getSecurityIsin());
+        } else if (message instanceof DeleteOrderRq rq) {
+            header(buffer, DELETE_ORDER_RQ);
+            buffer.putLong(rq.getRequestId());
+            putEnum(buffer, rq.getSide());
+            buffer.putLong(rq.getOrderId());
+            putTime(buffer, rq.getEntryTime());
+            putString(buffer, rq.getSecurityIsin());
+        } else if (message instanceof ChangeMatchingStateRq rq) {
+            header(buffer, CHANGE_MATCHING_STATE_RQ);
+            buffer.putLong(rq.getRequestId());
+            putEnum(buffer, rq.getTargetState());
+            putString(buffer, rq.getSecurityIsin());
+        } else if (message instanceof OrderAcceptedEvent event) {
+            orderEvent(buffer, ORDER_ACCEPTED, event, event.getRequestId(), event.getOrderId());
+        } else if (message instanceof OrderUpdatedEvent event) {
+            orderEvent(buffer, ORDER_UPDATED, event, event.getRequestId(), event.getOrderId());
+        } else if (message instanceof OrderDeletedEvent event) {
+            orderEvent(buffer, ORDER_DELETED, event, event.getRequestId(), event.getOrderId());
+        } else if (message instanceof OrderActivatedEvent event) {
+            orderEvent(buffer, ORDER_ACTIVATED, event, event.getRequestId(), event.getOrderId());
+        } else if (message instanceof OrderRejectedEvent event) {
+            orderEvent(buffer, ORDER_REJECTED, event, event.getRequestId(), event.getOrderId());
+            List<String> errors = event.getErrors();
+            buffer.putInt(errors == null ? -1 : errors.size());
+            if (errors != null)
+                errors.forEach(error -> putString(buffer, error));
+        } else if (message instanceof OrderExecutedEvent event) {
+            orderEvent(buffer, ORDER_EXECUTED, event, event.getRequestId(), event.getOrderId());
+            List<TradeDTO> trades = event.getTrades();
+            buffer.putInt(trades == null ? -1 : trades.size());
+            if (trades != null) {
+                for (TradeDTO trade : trades) {
+                    buffer.putInt(trade.price());
+                    buffer.putInt(trade.quantity());
+                    buffer.putLong(trade.buyOrderId());
+                    buffer.putLong(trade.sellOrderId());
+                    putString(buffer, trade.securityIsin());
+                }
+            }
+        } else if (message instanceof TradeEvent event) {
+            eventHeader(buffer, TRADE, event);
+            buffer.putInt(event.getPrice());
+            buffer.putInt(event.getQuantity());
+            buffer.putLong(event.getBuyId());
+            buffer.putLong(event.getSellId());
+            putString(buffer, event.getSecurityIsin());
+        } else if (message instanceof OpeningPriceEvent event) {
+            eventHeader(buffer, OPENING_PRICE, event);
+            buffer.putInt(event.getOpeningPrice());
+            buffer.putInt(event.getTradableQuantity());
+            putString(buffer, event.getSecurityIsin());
+        } else if (message instanceof SecurityStateChangedEvent event) {
+            eventHeader(buffer, SECURITY_STATE_CHANGED, event);
+            putEnum(buffer, event.getState());
+            putString(buffer, event.getSecurityIsin());
+        } else {
+            throw new IllegalArgumentException("No binary layout for " + message.getClass().getName());
+        }
+    }
+
+    public static Object decode(ByteBuffer buffer) {
+        byte template = buffer.get();
+        byte version = buffer.get();
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported binary message version " + version);
+        return switch (template) {
+            case ENTER_ORDER_RQ -> {
+                OrderEntryType requestType = getEnum(buffer, OrderEntryType.values());
+                long requestId = buffer.getLong();
+                long orderId = buffer.getLong();
+                LocalDateTime entryTime = getTime(buffer);
+                Side side = getEnum(buffer, Side.values());
+                int quantity = buffer.getInt();
+                int price = buffer.getInt();
+                long brokerId = buffer.getLong();
+                long shareholderId = buffer.getLong();
+                int peakSize = buffer.getInt();
+                long minimumExecutionQuantity = buffer.getLong();
+                long stopPrice = buffer.getLong();
+                yield new EnterOrderRq(requestType, requestId, getString(buffer), orderId, entryTime, side, quantity,
+                        price, brokerId, shareholderId, peakSize, minimumExecutionQuantity, stopPrice);
+            }
+            case DELETE_ORDER_RQ -> {
+                long requestId = buffer.getLong();
+                Side side = getEnum(buffer, Side.values());
+                long orderId = buffer.getLong();
+                LocalDateTime entryTime = getTime(buffer);
+                yield new DeleteOrderRq(requestId, getString(buffer), side, orderId, entryTime);
+            }
+            case CHANGE_MATCHING_STATE_RQ -> {
+                long requestId = buffer.getLong();
+                MatchingState state = getEnum(buffer, MatchingState.values());
+                yield new ChangeMatchingStateRq(requestId, getString(buffer), state);
+            }
+            case ORDER_ACCEPTED -> new OrderAcceptedEvent(getTime(buffer), buffer.getLong(), buffer.getLong());
+            case ORDER_UPDATED -> new OrderUpdatedEvent(getTime(buffer), buffer.getLong(), buffer.getLong());
+            case ORDER_DELETED -> new OrderDeletedEvent(getTime(buffer), buffer.getLong(), buffer.getLong());
+            case ORDER_ACTIVATED -> new OrderActivatedEvent(getTime(buffer), buffer.getLong(), buffer.getLong());
+            case ORDER_REJECTED -> {
+                LocalDateTime time = getTime(buffer);
+                long requestId = buffer.getLong();
+                long orderId = buffer.getLong();
+                int count = buffer.getInt();
+                List<String> errors = null;
+                if (count >= 0) {
+                    errors = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++)
+                        errors.add(getString(buffer));
+                }
+                yield new OrderRejectedEvent(time, requestId, orderId, errors);
+            }
+            case ORDER_EXECUTED -> {
+                LocalDateTime time = getTime(buffer);
+                long requestId = buffer.getLong();
+                long orderId = buffer.getLong();
+                int count = buffer.getInt();
+                List<TradeDTO> trades = null;
+                if (count >= 0) {
+                    trades = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        int price = buffer.getInt();
+                        int quantity = buffer.getInt();
+                        long buyOrderId = buffer.getLong();
+                        long sellOrderId = buffer.getLong();
+                        trades.add(new TradeDTO(getString(buffer), price, quantity, buyOrderId, sellOrderId));
+                    }
+                }
+                yield new OrderExecutedEvent(time, requestId, orderId, trades);
+            }
+            case TRADE -> {
+                LocalDateTime time = getTime(buffer);
+                int price = buffer.getInt();
+                int quantity = buffer.getInt();
+                long buyId = buffer.getLong();
+                long sellId = buffer.getLong();
+                yield new TradeEvent(time, getString(buffer), price, quantity, buyId, sellId);
+            }
+            case OPENING_PRICE -> {
+                LocalDateTime time = getTime(buffer);
+                int openingPrice = buffer.getInt();
+                int tradableQuantity = buffer.getInt();
+                yield new OpeningPriceEvent(time, getString(buffer), openingPrice, tradableQuantity);
+            }
+            case SECURITY_STATE_CHANGED -> {
+                LocalDateTime time = getTime(buffer);
+                MatchingState state = getEnum(buffer, MatchingState.values());
+                yield new SecurityStateChangedEvent(time, getString(buffer), state);
+            }
+            default -> throw new IllegalArgumentException("Unknown binary message template " + template);
+        };
+    }
+
+    private static void header(ByteBuffer buffer, byte template) {
+        buffer.put(template);
+        buffer.put(VERSION);
+    }
+
+    private static void eventHeader(ByteBuffer buffer, byte template, Event event) {
+        header(buffer, template);
+        putTime(buffer, event.getTime());
+    }
+
+    private static void orderEvent(ByteBuffer buffer, byte template, Event event, long requestId, long orderId) {
+        eventHeader(buffer, template, event);
+        buffer.putLong(requestId);
+        buffer.putLong(orderId);
+    }
+
+    private static void putEnum(ByteBuffer buffer, Enum<?> value) {
+        buffer.put(value == null ? -1 : (byte) value.ordinal());
+    }
+
+    private static <E extends Enum<E>> E getEnum(ByteBuffer buffer, E[] values) {
+        byte ordinal = buffer.get();
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    private static void putTime(ByteBuffer buffer, LocalDateTime time) {
+        if (time == null) {
+            buffer.putLong(NO_TIME);
+            buffer.putInt(0);
+        } else {
+            buffer.putLong(time.toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(time.getNano());
+        }
+    }
+
+    private static LocalDateTime getTime(ByteBuffer buffer) {
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        return seconds == NO_TIME ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE)
+            throw new IllegalArgumentException("String too long for binary encoding");
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0)
+            return null;
+        if (!buffer.hasArray()) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,75 @@
+package ir.ramtung.tinyme.messaging;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Sends requests and events as {@link BytesMessage}s laid out by {@link BinaryCodec}. The {@code _type} property is
+ * set as the JSON converter sets it, so type selectors keep working. Messages that are not binary, e.g. JSON text
+ * from older clients, are handed to the fallback converter. Encoding and decoding reuse a per-thread buffer.
+ */
+public class BinaryMessageConverter implements MessageConverter {
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final String typeIdPropertyName;
+    private final MessageConverter fallback;
+    private final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+
+    public BinaryMessageConverter(String typeIdPropertyName, MessageConverter fallback) {
+        this.typeIdPropertyName = typeIdPropertyName;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException, MessageConversionException {
+        ByteBuffer buffer = encode(object);
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(buffer.array(), 0, buffer.position());
+        message.setStringProperty(typeIdPropertyName, object.getClass().getName());
+        return message;
+    }
+
+    private ByteBuffer encode(Object object) {
+        ByteBuffer buffer = buffers.get();
+        while (true) {
+            buffer.clear();
+            try {
+                BinaryCodec.encode(object, buffer);
+                return buffer;
+            } catch (BufferOverflowException ex) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+                buffers.set(buffer);
+            } catch (IllegalArgumentException ex) {
+                throw new MessageConversionException(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException, MessageConversionException {
+        if (!(message instanceof BytesMessage bytesMessage))
+            return fallback.fromMessage(message);
+        int length = (int) bytesMessage.getBodyLength();
+        ByteBuffer buffer = buffers.get();
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Integer.highestOneBit(length) << 1).order(ByteOrder.LITTLE_ENDIAN);
+            buffers.set(buffer);
+        }
+        bytesMessage.readBytes(buffer.array(), length);
+        buffer.clear().limit(length);
+        try {
+            return BinaryCodec.decode(buffer);
+        } catch (RuntimeException ex) {
+            throw new MessageConversionException("Malformed binary message", ex);
+        }
+    }
+}
@@ -1,25 +1,217 @@
 package ir.ramtung.tinyme.messaging;
 
 import ir.ramtung.tinyme.messaging.event.Event;
+import ir.ramtung.tinyme.pipeline.BatchProcessor;
+import ir.ramtung.tinyme.pipeline.RingBuffer;
+import ir.ramtung.tinyme.pipeline.WaitStrategy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.JmsException;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Sends events to the response queue. By default every event is sent synchronously by the thread that publishes it.
+ * With {@code asyncPublishing=true} (implied by {@code requestPipeline=true}) the publishing thread only claims a
+ * slot in a bounded ring, and a publish stage sends the events in batches of up to {@code publishBatchSize}, each in
+ * one transacted JMS session. The stage lingers up to {@code publishLingerMicros} for a short batch to fill. When the
+ * ring is full, publishers wait for the stage to catch up. A batch the broker does not take is retried with
+ * exponential backoff, and the stage does not move past it until it is sent, so a broker outage backs up into the
+ * ring and then into the publishers instead of losing events; only an event that fails with anything but a broker
+ * error, such as one that cannot be converted to a message, is dropped, and the rest of its batch is still sent. Events leave in the order they were published, so the events of a security keep their order. In synchronous mode, a caller may bind its own transacted session to the
+ * current thread so the events it publishes are committed together with its other work on that session.
+ * While muted, for instance during journal replay, published events are dropped.
+ */
 @Component
 public class EventPublisher {
+    static final class EventSlot {
+        Event event;
+    }
+
+    private static final long FIRST_RETRY_MILLIS = 10;
+    private static final long MAX_RETRY_MILLIS = 5_000;
+
     private final Logger log = Logger.getLogger(this.getClass().getName());
     private final JmsTemplate jmsTemplate;
     @Value("${responseQueue}")
     private String responseQueue;
+    @Value("${asyncPublishing:false}")
+    private boolean asyncPublishing;
+    @Value("${requestPipeline:false}")
+    private boolean pipelined;
+    @Value("${publishQueueSize:4096}")
+    private int queueSize;
+    @Value("${publishBatchSize:64}")
+    private int batchSize;
+    @Value("${publishLingerMicros:0}")
+    private long lingerMicros;
+    @Value("${pipelineWaitStrategy:park}")
+    private String waitStrategy;
+    private RingBuffer<EventSlot> ringBuffer;
+    private BatchProcessor<EventSlot> publishStage;
+    private JmsTemplate batchTemplate;
+    private final List<Event> batch = new ArrayList<>();
+    private volatile boolean muted;
+    private volatile boolean stopped;
+    private final ThreadLocal<BoundSession> boundSession = new ThreadLocal<>();
+
+    private record BoundSession(Session session, MessageProducer producer, List<Event> sent) {}
 
     public EventPublisher(JmsTemplate jmsTemplate) {
         this.jmsTemplate = jmsTemplate;
     }
 
+    @PostConstruct
+    void startPublishStage() {
+        if (!asyncPublishing && !pipelined)
+            return;
+        batchTemplate = new JmsTemplate(jmsTemplate.getConnectionFactory());
+        batchTemplate.setMessageConverter(jmsTemplate.getMessageConverter());
+        batchTemplate.setDestinationResolver(jmsTemplate.getDestinationResolver());
+        batchTemplate.setSessionTransacted(true);
+
+        ringBuffer = new RingBuffer<>(EventSlot::new, queueSize, WaitStrategy.named(waitStrategy));
+        publishStage = new BatchProcessor<>(ringBuffer, ringBuffer.newBarrier(), this::collect)
+                .batching(batchSize, TimeUnit.MICROSECONDS.toNanos(lingerMicros));
+        ringBuffer.addGatingSequences(publishStage.getSequence());
+        new Thread(publishStage, "event-publisher").start();
+    }
+
     public void publish(Event event) {
-        log.info("Published : " + event);
-        jmsTemplate.convertAndSend(responseQueue, event);
+        if (muted)
+            return;
+        if (ringBuffer == null) {
+            send(event);
+            return;
+        }
+        long sequence = ringBuffer.next();
+        ringBuffer.get(sequence).event = event;
+        ringBuffer.publish(sequence);
+    }
+
+    public void setMuted(boolean muted) {
+        this.muted = muted;
+    }
+
+    private void send(Event event) {
+        log.fine(() -> "Published : " + event);
+        BoundSession bound = boundSession.get();
+        if (bound == null) {
+            jmsTemplate.convertAndSend(responseQueue, event);
+            return;
+        }
+        bound.sent().add(event);
+        try {
+            bound.producer().send(jmsTemplate.getMessageConverter().toMessage(event, bound.session()));
+        } catch (JMSException ex) {
+            throw JmsUtils.convertJmsAccessException(ex);
+        }
+    }
+
+    /**
+     * Sends the events published on this thread through {@code session} until {@link #unbindSession}, and records
+     * each of them in {@code sent}. Events that go through the publish stage are not affected.
+     */
+    public void bindSession(Session session, List<Event> sent) throws JMSException {
+        Destination destination = jmsTemplate.getDestinationResolver()
+                .resolveDestinationName(session, responseQueue, false);
+        boundSession.set(new BoundSession(session, session.createProducer(destination), sent));
+    }
+
+    public void unbindSession() {
+        BoundSession bound = boundSession.get();
+        boundSession.remove();
+        if (bound != null)
+            JmsUtils.closeMessageProducer(bound.producer());
+    }
+
+    private void collect(EventSlot slot, long sequence, boolean endOfBatch) {
+        batch.add(slot.event);
+        slot.event = null;
+        if (!endOfBatch)
+            return;
+        try {
+            sendWithRetry();
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void sendWithRetry() {
+        long backoffMillis = FIRST_RETRY_MILLIS;
+        while (true) {
+            try {
+                sendBatch();
+                return;
+            } catch (JmsException ex) {
+                if (stopped) {
+                    log.log(Level.SEVERE, "Gave up sending " + batch.size() + " events at shutdown: " + batch, ex);
+                    return;
+                }
+                log.log(Level.WARNING, "Sending " + batch.size() + " events failed, retrying in " + backoffMillis
+                        + " ms", ex);
+                if (!sleep(backoffMillis))
+                    stopped = true;
+                backoffMillis = Math.min(2 * backoffMillis, MAX_RETRY_MILLIS);
+            }
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void sendBatch() {
+        batchTemplate.execute(session -> {
+            Destination destination = batchTemplate.getDestinationResolver()
+                    .resolveDestinationName(session, responseQueue, false);
+            MessageProducer producer = session.createProducer(destination);
+            try {
+                Iterator<Event> events = batch.iterator();
+                while (events.hasNext()) {
+                    Event event = events.next();
+                    try {
+                        producer.send(batchTemplate.getMessageConverter().toMessage(event, session));
+                    } catch (RuntimeException ex) {
+                        // only a broker failure (a JMSException) fails the batch; this event alone is dropped
+                        log.log(Level.SEVERE, "Dropped event that could not be sent: " + event, ex);
+                        events.remove();
+                    }
+                }
+                JmsUtils.commitIfNecessary(session);
+            } finally {
+                JmsUtils.closeMessageProducer(producer);
+            }
+            return null;
+        }, false);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Published a batch of " + batch.size() + " events: " + batch);
+    }
+
+    @PreDestroy
+    void stopPublishStage() throws InterruptedException {
+        if (publishStage == null)
+            return;
+        publishStage.haltWhenDrained(10_000);
+        stopped = true;
     }
 }
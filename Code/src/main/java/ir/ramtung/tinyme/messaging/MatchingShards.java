@@ -0,0 +1,143 @@
+package ir.ramtung.tinyme.messaging;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.JmsException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs requests on single-writer matching threads. Every security is pinned to one shard by its ISIN, so requests
+ * for a security run one at a time in arrival order while different securities match in parallel. Each shard has a
+ * bounded mailbox of {@code matchingShardQueueSize} requests, and a caller finding it full waits for room.
+ * {@link #submit} returns as soon as the request is in the mailbox; a caller that must not acknowledge a request
+ * before it ran, like {@link BatchRequestConsumer}, keeps the returned futures and waits for them with
+ * {@link #awaitAll}. A request that fails with anything but a messaging error is handed to its failure handler.
+ * With zero shards, which is the default, requests run on the calling thread.
+ */
+@Component
+public class MatchingShards {
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+    private static final Future<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final Logger log = Logger.getLogger(this.getClass().getName());
+    private final ThreadPoolExecutor[] shards;
+
+    @Autowired
+    public MatchingShards(@Value("${matchingShards:0}") int shardCount,
+                          @Value("${matchingShardQueueSize:1024}") int queueSize) {
+        shards = new ThreadPoolExecutor[Math.max(0, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            String name = "matching-shard-" + i;
+            shards[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                    task -> new Thread(task, name), MatchingShards::waitForRoom);
+        }
+    }
+
+    public MatchingShards(int shardCount) {
+        this(shardCount, DEFAULT_QUEUE_SIZE);
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    int shardOf(String isin) {
+        return Math.floorMod(isin == null ? 0 : isin.hashCode(), shards.length);
+    }
+
+    public Future<Void> submit(String isin, Runnable request, Consumer<RuntimeException> onFailure) {
+        if (shards.length == 0) {
+            run(isin, request, onFailure);
+            return DONE;
+        }
+        FutureTask<Void> task = new FutureTask<>(() -> run(isin, request, onFailure), null);
+        shards[shardOf(isin)].execute(task);
+        return task;
+    }
+
+    // messaging errors of the requests are rethrown here, after every one of them has run
+    public void awaitAll(List<Future<Void>> requests) {
+        RuntimeException failure = null;
+        for (Future<Void> request : requests) {
+            try {
+                awaitUninterruptibly(request);
+            } catch (RuntimeException ex) {
+                if (failure == null)
+                    failure = ex;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private void run(String isin, Runnable request, Consumer<RuntimeException> onFailure) {
+        try {
+            request.run();
+        } catch (JmsException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            log.log(Level.SEVERE, "Request for " + isin + " failed", ex);
+            onFailure.accept(ex);
+        }
+    }
+
+    // the message of a request must not be acknowledged before the request ran, so interrupts are deferred
+    private static void awaitUninterruptibly(Future<Void> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    task.get();
+                    return;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof RuntimeException cause)
+                        throw cause;
+                    if (ex.getCause() instanceof Error error)
+                        throw error;
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitForRoom(Runnable task, ThreadPoolExecutor shard) {
+        if (shard.isShutdown())
+            throw new RejectedExecutionException("Matching shard is shut down");
+        try {
+            shard.getQueue().put(task);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for room in a matching shard", ex);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor shard : shards)
+            shard.shutdown();
+        for (ThreadPoolExecutor shard : shards) {
+            if (!shard.awaitTermination(10, TimeUnit.SECONDS))
+                log.severe("Matching shard did not drain in time, " + shard.getQueue().size()
+                        + " requests left unhandled");
+        }
+    }
+}
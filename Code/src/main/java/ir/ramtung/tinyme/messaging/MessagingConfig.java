@@ -1,18 +1,41 @@
 package ir.ramtung.tinyme.messaging;
 
+import jakarta.jms.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
 import org.springframework.jms.support.converter.MappingJackson2MessageConverter;
 import org.springframework.jms.support.converter.MessageConverter;
 import org.springframework.jms.support.converter.MessageType;
 
 @Configuration
 public class MessagingConfig {
+    private static final String TYPE_ID_PROPERTY = "_type";
+
     @Bean
-    public MessageConverter jacksonJmsMessageConverter() {
+    public MessageConverter jacksonJmsMessageConverter(@Value("${messageCodec:json}") String messageCodec) {
         MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
         converter.setTargetType(MessageType.TEXT);
-        converter.setTypeIdPropertyName("_type");
-        return converter;
+        converter.setTypeIdPropertyName(TYPE_ID_PROPERTY);
+        return switch (messageCodec) {
+            case "json" -> converter;
+            case "binary" -> new BinaryMessageConverter(TYPE_ID_PROPERTY, converter);
+            default -> throw new IllegalArgumentException("Unknown message codec: " + messageCodec);
+        };
+    }
+
+    // when the batch consumer takes the requests, the listeners must not start and compete with it for messages
+    @Bean
+    public DefaultJmsListenerContainerFactory jmsListenerContainerFactory(
+            DefaultJmsListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            MatchingShards matchingShards, @Value("${requestBatchSize:0}") int requestBatchSize,
+            @Value("${requestPipeline:false}") boolean requestPipeline) {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAutoStartup(BatchRequestConsumer.effectiveBatchSize(requestBatchSize, matchingShards.shardCount(),
+                requestPipeline) <= 0);
+        return factory;
     }
 }
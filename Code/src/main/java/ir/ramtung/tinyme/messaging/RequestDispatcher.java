@@ -3,6 +3,7 @@ package ir.ramtung.tinyme.messaging;
 import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
 import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
 import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.repository.SecurityRepository;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
@@ -12,20 +13,33 @@ import java.util.logging.Logger;
 public class RequestDispatcher {
     private final Logger log = Logger.getLogger(this.getClass().getName());
     private final OrderHandler orderHandler;
+    private final RequestPipeline requestPipeline;
+    private final SecurityRepository securityRepository;
 
-    public RequestDispatcher(OrderHandler orderHandler) {
+    public RequestDispatcher(OrderHandler orderHandler, RequestPipeline requestPipeline,
+                             SecurityRepository securityRepository) {
         this.orderHandler = orderHandler;
+        this.requestPipeline = requestPipeline;
+        this.securityRepository = securityRepository;
     }
 
     @JmsListener(destination = "${requestQueue}", selector = "_type='ir.ramtung.tinyme.messaging.request.EnterOrderRq'")
     public void receiveEnterOrderRq(EnterOrderRq enterOrderRq) {
         log.info("Received message: " + enterOrderRq);
-        orderHandler.handleEnterOrder(enterOrderRq);
+        securityRepository.resolve(enterOrderRq);
+        if (requestPipeline.isEnabled())
+            requestPipeline.submit(enterOrderRq);
+        else
+            orderHandler.handleEnterOrder(enterOrderRq);
     }
 
     @JmsListener(destination = "${requestQueue}", selector = "_type='ir.ramtung.tinyme.messaging.request.DeleteOrderRq'")
     public void receiveDeleteOrderRq(DeleteOrderRq deleteOrderRq) {
         log.info("Received message: " + deleteOrderRq);
-        orderHandler.handleDeleteOrder(deleteOrderRq);
+        securityRepository.resolve(deleteOrderRq);
+        if (requestPipeline.isEnabled())
+            requestPipeline.submit(deleteOrderRq);
+        else
+            orderHandler.handleDeleteOrder(deleteOrderRq);
     }
 }
@@ -0,0 +1,86 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.messaging.event.OrderRejectedEvent;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.pipeline.BatchProcessor;
+import ir.ramtung.tinyme.pipeline.RingBuffer;
+import ir.ramtung.tinyme.pipeline.WaitStrategy;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Ingress half of the request pipeline. JMS listener threads decode requests and claim slots in a preallocated ring;
+ * a single match stage drains the ring in batches, validating and matching each request through
+ * {@link OrderHandler} (or handing it to its {@link MatchingShards shard}). Events produced while matching go to the
+ * egress ring of {@link EventPublisher}, so a slow broker send no longer holds up matching.
+ * A request's message is acknowledged once the request is in the ring, before it is matched.
+ * Enabled with {@code requestPipeline=true}; otherwise requests are matched on the listener thread.
+ */
+@Component
+public class RequestPipeline {
+    static final class RequestSlot {
+        Object request;
+    }
+
+    private final OrderHandler orderHandler;
+    private final MatchingShards matchingShards;
+    private final EventPublisher eventPublisher;
+    private final RingBuffer<RequestSlot> ringBuffer;
+    private final BatchProcessor<RequestSlot> matchStage;
+
+    public RequestPipeline(OrderHandler orderHandler, MatchingShards matchingShards, EventPublisher eventPublisher,
+                           @Value("${requestPipeline:false}") boolean enabled,
+                           @Value("${pipelineRingSize:4096}") int ringSize,
+                           @Value("${pipelineWaitStrategy:park}") String waitStrategy) {
+        this.orderHandler = orderHandler;
+        this.matchingShards = matchingShards;
+        this.eventPublisher = eventPublisher;
+        if (!enabled) {
+            ringBuffer = null;
+            matchStage = null;
+            return;
+        }
+        ringBuffer = new RingBuffer<>(RequestSlot::new, ringSize, WaitStrategy.named(waitStrategy));
+        matchStage = new BatchProcessor<>(ringBuffer, ringBuffer.newBarrier(), this::match);
+        ringBuffer.addGatingSequences(matchStage.getSequence());
+        new Thread(matchStage, "pipeline-match").start();
+    }
+
+    public boolean isEnabled() {
+        return ringBuffer != null;
+    }
+
+    public void submit(Object request) {
+        long sequence = ringBuffer.next();
+        ringBuffer.get(sequence).request = request;
+        ringBuffer.publish(sequence);
+    }
+
+    private void match(RequestSlot slot, long sequence, boolean endOfBatch) {
+        Object request = slot.request;
+        slot.request = null;
+        if (request instanceof EnterOrderRq enterOrderRq)
+            matchingShards.submit(enterOrderRq.getSecurityIsin(), () -> orderHandler.handleEnterOrder(enterOrderRq),
+                    ex -> reject(enterOrderRq.getRequestId(), enterOrderRq.getOrderId()));
+        else if (request instanceof DeleteOrderRq deleteOrderRq)
+            matchingShards.submit(deleteOrderRq.getSecurityIsin(), () -> orderHandler.handleDeleteOrder(deleteOrderRq),
+                    ex -> reject(deleteOrderRq.getRequestId(), deleteOrderRq.getOrderId()));
+        else
+            throw new IllegalArgumentException("Unsupported request: " + request);
+    }
+
+    private void reject(long requestId, long orderId) {
+        eventPublisher.publish(new OrderRejectedEvent(requestId, orderId, List.of(Message.REQUEST_FAILED)));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (matchStage != null)
+            matchStage.haltWhenDrained(10_000);
+    }
+}
@@ -15,4 +15,11 @@ public class OpeningPriceEvent extends Event {
     private String securityIsin ;
     private int openingPrice ;
     private int tradableQuantity ;
+
+    public OpeningPriceEvent(LocalDateTime time, String securityIsin, int openingPrice, int tradableQuantity) {
+        super(time);
+        this.securityIsin = securityIsin;
+        this.openingPrice = openingPrice;
+        this.tradableQuantity = tradableQuantity;
+    }
 }
@@ -15,4 +15,9 @@ public class OrderAcceptedEvent extends Event {
     private long requestId;
     private long orderId;
 
+    public OrderAcceptedEvent(LocalDateTime time, long requestId, long orderId) {
+        super(time);
+        this.requestId = requestId;
+        this.orderId = orderId;
+    }
 }
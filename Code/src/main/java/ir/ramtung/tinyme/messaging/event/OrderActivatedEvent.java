@@ -14,4 +14,10 @@ import java.time.LocalDateTime;
 public class OrderActivatedEvent extends Event {
     private long requestId;
     private long orderId;
+
+    public OrderActivatedEvent(LocalDateTime time, long requestId, long orderId) {
+        super(time);
+        this.requestId = requestId;
+        this.orderId = orderId;
+    }
 }
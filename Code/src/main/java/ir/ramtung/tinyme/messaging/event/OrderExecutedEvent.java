@@ -19,4 +19,10 @@ public class OrderExecutedEvent extends Event {
     private long orderId;
     private List<TradeDTO> trades;
 
+    public OrderExecutedEvent(LocalDateTime time, long requestId, long orderId, List<TradeDTO> trades) {
+        super(time);
+        this.requestId = requestId;
+        this.orderId = orderId;
+        this.trades = trades;
+    }
 }
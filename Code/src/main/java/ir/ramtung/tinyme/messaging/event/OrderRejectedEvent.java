@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
@@ -17,4 +18,11 @@ public class OrderRejectedEvent extends Event {
     private List<String> errors;
 
     public static final long NO_ORDER_ID = -1 ;
+
+    public OrderRejectedEvent(LocalDateTime time, long requestId, long orderId, List<String> errors) {
+        super(time);
+        this.requestId = requestId;
+        this.orderId = orderId;
+        this.errors = errors;
+    }
 }
@@ -6,6 +6,8 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @EqualsAndHashCode(callSuper = false)
 @AllArgsConstructor
@@ -15,4 +17,9 @@ public class SecurityStateChangedEvent extends Event{
     private String securityIsin ;
     private MatchingState state ;
 
+    public SecurityStateChangedEvent(LocalDateTime time, String securityIsin, MatchingState state) {
+        super(time);
+        this.securityIsin = securityIsin;
+        this.state = state;
+    }
 }
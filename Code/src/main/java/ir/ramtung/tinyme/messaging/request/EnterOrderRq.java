@@ -1,12 +1,16 @@
 package ir.ramtung.tinyme.messaging.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import ir.ramtung.tinyme.domain.entity.Security;
 import ir.ramtung.tinyme.domain.entity.Side;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -30,6 +34,11 @@ public class EnterOrderRq {
     private int peakSize;
     private long minimumExecutionQuantity;
     private long stopPrice;
+    // resolved by SecurityRepository.resolve, not part of the message
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private int securityId = Security.UNRESOLVED_ID;
 
     public EnterOrderRq(OrderEntryType requestType, long requestId, String securityIsin, long orderId, LocalDateTime entryTime, Side side,
                         int quantity, int price, long brokerId, long shareholderId, int peakSize,
@@ -0,0 +1,13 @@
+package ir.ramtung.tinyme.pipeline;
+
+/**
+ * Thrown to a processor waiting on a {@link SequenceBarrier} when the barrier is alerted, which is how processors
+ * are told to stop.
+ */
+public class AlertException extends Exception {
+    static final AlertException INSTANCE = new AlertException();
+
+    private AlertException() {
+        super(null, null, false, false);
+    }
+}
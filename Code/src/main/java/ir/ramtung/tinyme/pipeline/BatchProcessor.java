@@ -0,0 +1,88 @@
+package ir.ramtung.tinyme.pipeline;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs one pipeline stage: waits on its barrier and hands every newly available slot to the handler. When the
+ * stage falls behind, a single wait returns a whole run of slots, which are processed as one batch before the
+ * stage's sequence is advanced. A batch can be capped in size, and a stage can be told to linger for a while when
+ * a batch comes up short, to give producers a chance to fill it.
+ */
+public class BatchProcessor<E> implements Runnable {
+    private final Logger log = Logger.getLogger(this.getClass().getName());
+    private final RingBuffer<E> ringBuffer;
+    private final SequenceBarrier barrier;
+    private final EventHandler<? super E> handler;
+    private final Sequence sequence = new Sequence(-1);
+    private volatile boolean running = true;
+    private int maxBatchSize = Integer.MAX_VALUE;
+    private long lingerNanos = 0;
+
+    public BatchProcessor(RingBuffer<E> ringBuffer, SequenceBarrier barrier, EventHandler<? super E> handler) {
+        this.ringBuffer = ringBuffer;
+        this.barrier = barrier;
+        this.handler = handler;
+    }
+
+    public Sequence getSequence() {
+        return sequence;
+    }
+
+    public BatchProcessor<E> batching(int maxBatchSize, long lingerNanos) {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive");
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = lingerNanos;
+        return this;
+    }
+
+    public void halt() {
+        running = false;
+        barrier.alert();
+    }
+
+    // lets the stage catch up with everything published so far before halting it
+    public void haltWhenDrained(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (sequence.get() < ringBuffer.cursor().get() && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        halt();
+    }
+
+    @Override
+    public void run() {
+        long next = sequence.get() + 1;
+        while (true) {
+            try {
+                long available = endOfBatch(next, barrier.waitFor(next));
+                while (next <= available) {
+                    handler.onEvent(ringBuffer.get(next), next, next == available);
+                    next++;
+                }
+                sequence.set(available);
+            } catch (AlertException ex) {
+                if (!running)
+                    break;
+            } catch (Exception ex) {
+                log.log(Level.SEVERE, "Pipeline handler failed at sequence " + next, ex);
+                sequence.set(next);
+                next++;
+            }
+        }
+    }
+
+    private long endOfBatch(long first, long available) {
+        long last = first + maxBatchSize - 1;
+        if (available >= last || available < first)
+            return Math.min(available, last);
+        if (lingerNanos > 0) {
+            long deadline = System.nanoTime() + lingerNanos;
+            while (available < last && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+                available = barrier.highestAvailable(first);
+            }
+        }
+        return Math.min(available, last);
+    }
+}
@@ -0,0 +1,6 @@
+package ir.ramtung.tinyme.pipeline;
+
+@FunctionalInterface
+public interface EventHandler<E> {
+    void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+}
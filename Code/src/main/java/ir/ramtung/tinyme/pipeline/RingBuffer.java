@@ -0,0 +1,102 @@
+package ir.ramtung.tinyme.pipeline;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Fixed-size ring of preallocated slots shared by any number of producers. A producer claims a sequence with
+ * {@link #next()}, fills the slot returned by {@link #get(long)} and then {@link #publish(long) publishes} it.
+ * Publication is tracked per slot, so consumers only see a contiguous run of published sequences even though
+ * producers may finish out of order. Producers wait while the ring is full, i.e. while the slowest gating consumer
+ * is a whole ring behind.
+ */
+public class RingBuffer<E> {
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Object[] entries;
+    private final int mask;
+    private final int indexShift;
+    private final int[] available;
+    private final Sequence cursor = new Sequence(-1);
+    private final Sequence gatingCache = new Sequence(-1);
+    private final WaitStrategy waitStrategy;
+    private volatile Sequence[] gatingSequences = new Sequence[0];
+
+    public RingBuffer(Supplier<E> factory, int size, WaitStrategy waitStrategy) {
+        if (size < 1 || Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("Ring size must be a power of two");
+        this.entries = new Object[size];
+        for (int i = 0; i < size; i++)
+            entries[i] = factory.get();
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.available = new int[size];
+        Arrays.fill(available, -1);
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    Sequence cursor() {
+        return cursor;
+    }
+
+    public void addGatingSequences(Sequence... sequences) {
+        Sequence[] current = gatingSequences;
+        Sequence[] updated = Arrays.copyOf(current, current.length + sequences.length);
+        System.arraycopy(sequences, 0, updated, current.length, sequences.length);
+        gatingSequences = updated;
+    }
+
+    public SequenceBarrier newBarrier(Sequence... dependents) {
+        return new SequenceBarrier(this, waitStrategy, dependents);
+    }
+
+    public long next() {
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + 1;
+            long wrapPoint = next - entries.length;
+            long cachedGating = gatingCache.get();
+            if (wrapPoint > cachedGating || cachedGating > current) {
+                long gating = Sequence.minimum(gatingSequences, current);
+                if (wrapPoint > gating) {
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+                gatingCache.set(gating);
+            } else if (cursor.compareAndSet(current, next)) {
+                break;
+            }
+        } while (true);
+        return next;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    public void publish(long sequence) {
+        AVAILABLE.setRelease(available, (int) sequence & mask, (int) (sequence >>> indexShift));
+    }
+
+    boolean isAvailable(long sequence) {
+        return (int) AVAILABLE.getAcquire(available, (int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    long highestPublished(long lowerBound, long availableSequence) {
+        for (long sequence = lowerBound; sequence <= availableSequence; sequence++) {
+            if (!isAvailable(sequence))
+                return sequence - 1;
+        }
+        return availableSequence;
+    }
+}
@@ -0,0 +1,58 @@
+package ir.ramtung.tinyme.pipeline;
+
+/**
+ * What a processor waits on: the ring's published sequences, and optionally the sequences of the stages it
+ * follows. A processor never reads past the slowest of them.
+ */
+public class SequenceBarrier {
+    private final RingBuffer<?> ringBuffer;
+    private final WaitStrategy waitStrategy;
+    private final Sequence dependency;
+    private volatile boolean alerted;
+
+    SequenceBarrier(RingBuffer<?> ringBuffer, WaitStrategy waitStrategy, Sequence[] dependents) {
+        this.ringBuffer = ringBuffer;
+        this.waitStrategy = waitStrategy;
+        this.dependency = (dependents.length == 0) ? ringBuffer.cursor() : new MinimumSequence(dependents);
+    }
+
+    // highest sequence at or after the requested one that can be read without blocking
+    public long waitFor(long sequence) throws AlertException {
+        checkAlert();
+        long available = waitStrategy.waitFor(sequence, dependency, this);
+        if (available < sequence)
+            return available;
+        return ringBuffer.highestPublished(sequence, available);
+    }
+
+    // like waitFor, but returns sequence - 1 instead of waiting when nothing new is available
+    public long highestAvailable(long sequence) {
+        long available = dependency.get();
+        if (available < sequence)
+            return available;
+        return ringBuffer.highestPublished(sequence, available);
+    }
+
+    public void alert() {
+        alerted = true;
+    }
+
+    public void checkAlert() throws AlertException {
+        if (alerted)
+            throw AlertException.INSTANCE;
+    }
+
+    private static final class MinimumSequence extends Sequence {
+        private final Sequence[] sequences;
+
+        MinimumSequence(Sequence[] sequences) {
+            super(-1);
+            this.sequences = sequences.clone();
+        }
+
+        @Override
+        public long get() {
+            return minimum(sequences, Long.MAX_VALUE);
+        }
+    }
+}
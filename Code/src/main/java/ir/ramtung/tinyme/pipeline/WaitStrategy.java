@@ -0,0 +1,78 @@
+package ir.ramtung.tinyme.pipeline;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a consumer waits for a sequence to become available. Busy-spin gives the lowest latency at the cost of a core
+ * per consumer, yield backs off to the scheduler after a short spin, and park sleeps briefly after spinning and
+ * yielding so that an idle pipeline costs next to nothing.
+ */
+public interface WaitStrategy {
+    long waitFor(long sequence, Sequence dependency, SequenceBarrier barrier) throws AlertException;
+
+    static WaitStrategy named(String name) {
+        return switch (name) {
+            case "busy-spin" -> new BusySpin();
+            case "yield" -> new Yielding();
+            case "park" -> new Parking();
+            default -> throw new IllegalArgumentException("Unknown wait strategy: " + name);
+        };
+    }
+
+    class BusySpin implements WaitStrategy {
+        @Override
+        public long waitFor(long sequence, Sequence dependency, SequenceBarrier barrier) throws AlertException {
+            long available;
+            while ((available = dependency.get()) < sequence) {
+                barrier.checkAlert();
+                Thread.onSpinWait();
+            }
+            return available;
+        }
+    }
+
+    class Yielding implements WaitStrategy {
+        private static final int SPIN_TRIES = 100;
+
+        @Override
+        public long waitFor(long sequence, Sequence dependency, SequenceBarrier barrier) throws AlertException {
+            long available;
+            int counter = SPIN_TRIES;
+            while ((available = dependency.get()) < sequence) {
+                barrier.checkAlert();
+                if (counter > 0) {
+                    counter--;
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            return available;
+        }
+    }
+
+    class Parking implements WaitStrategy {
+        private static final int SPIN_TRIES = 100;
+        private static final int YIELD_TRIES = 100;
+        private static final long PARK_NANOS = 50_000;
+
+        @Override
+        public long waitFor(long sequence, Sequence dependency, SequenceBarrier barrier) throws AlertException {
+            long available;
+            int counter = SPIN_TRIES + YIELD_TRIES;
+            while ((available = dependency.get()) < sequence) {
+                barrier.checkAlert();
+                if (counter > YIELD_TRIES) {
+                    counter--;
+                    Thread.onSpinWait();
+                } else if (counter > 0) {
+                    counter--;
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+            return available;
+        }
+    }
+}
@@ -3,6 +3,12 @@ package ir.ramtung.tinyme.repository;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.journal.RequestJournal;
+import ir.ramtung.tinyme.messaging.EventPublisher;
+import ir.ramtung.tinyme.messaging.request.ChangeMatchingStateRq;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,8 +21,10 @@ import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.time.LocalDateTime;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.StringJoiner;
 import java.util.logging.Logger;
 
@@ -27,42 +35,81 @@ public class DataLoader {
     private final BrokerRepository brokerRepository;
     private final ShareholderRepository shareholderRepository;
     private final SecurityRepository securityRepository;
+    private final RequestJournal requestJournal;
+    private final OrderHandler orderHandler;
+    private final EventPublisher eventPublisher;
+    private final SnapshotStore snapshotStore;
 
-    public DataLoader(BrokerRepository brokerRepository, ShareholderRepository shareholderRepository, SecurityRepository securityRepository) {
+    public DataLoader(BrokerRepository brokerRepository, ShareholderRepository shareholderRepository, SecurityRepository securityRepository,
+                      RequestJournal requestJournal, OrderHandler orderHandler, EventPublisher eventPublisher,
+                      SnapshotStore snapshotStore) {
         this.brokerRepository = brokerRepository;
         this.shareholderRepository = shareholderRepository;
         this.securityRepository = securityRepository;
+        this.requestJournal = requestJournal;
+        this.orderHandler = orderHandler;
+        this.eventPublisher = eventPublisher;
+        this.snapshotStore = snapshotStore;
     }
 
-    @Value("classpath:persistence/broker.csv")
+    @Value("${persistenceLocation:classpath:persistence}/broker.csv")
     private Resource brokerCsvResource;
-    @Value("classpath:persistence/shareholder.csv")
+    @Value("${persistenceLocation:classpath:persistence}/shareholder.csv")
     private Resource shareholderCsvResource;
-    @Value("classpath:persistence/security.csv")
+    @Value("${persistenceLocation:classpath:persistence}/security.csv")
     private Resource securityCsvResource;
-    @Value("classpath:persistence/position.csv")
+    @Value("${persistenceLocation:classpath:persistence}/position.csv")
     private Resource positionCsvResource;
-    @Value("classpath:persistence/orderbook.csv")
+    @Value("${persistenceLocation:classpath:persistence}/orderbook.csv")
     private Resource orderBookCsvResource;
 
     @PostConstruct
     public void loadAll() throws Exception {
-        loadBrokers();
-        loadShareholders();
-        loadSecurities();
-        loadPositions();
-        loadOrderBook();
+        long snapshotSequence = snapshotStore.loadLatest();
+        if (snapshotSequence < 0) {
+            loadBrokers();
+            loadShareholders();
+            loadSecurities();
+            loadPositions();
+            loadOrderBook();
+            snapshotSequence = 0;
+        }
+        replayJournal(snapshotSequence);
     }
 
     @PreDestroy
     public void saveAll() throws Exception {
         System.out.print("Saving persistent data ...");
-        saveBrokers();
-        saveShareholdersAndPositions();
-        saveSecuritiesAndOrderBooks();
+        if (snapshotStore.isEnabled()) {
+            snapshotStore.takeSnapshot();
+        } else {
+            saveBrokers();
+            saveShareholdersAndPositions();
+            saveSecuritiesAndOrderBooks();
+            requestJournal.truncate();
+        }
         System.out.println(", done!");
     }
 
+    private void replayJournal(long afterSequence) {
+        if (!requestJournal.isEnabled())
+            return;
+        eventPublisher.setMuted(true);
+        try {
+            requestJournal.replay(afterSequence, request -> {
+                if (request instanceof EnterOrderRq enterOrderRq)
+                    orderHandler.handleEnterOrder(enterOrderRq);
+                else if (request instanceof DeleteOrderRq deleteOrderRq)
+                    orderHandler.handleDeleteOrder(deleteOrderRq);
+                else if (request instanceof ChangeMatchingStateRq changeMatchingStateRq)
+                    orderHandler.handleChangeMatchingState(changeMatchingStateRq);
+            });
+        } finally {
+            eventPublisher.setMuted(false);
+        }
+        log.info("Journal replayed");
+    }
+
     private void loadBrokers() throws Exception {
         brokerRepository.clear();
       try (Reader reader = new FileReader(brokerCsvResource.getFile())) {
@@ -127,8 +174,13 @@ public class DataLoader {
         log.info("Positions loaded");
     }
 
+    private record SecurityOrders(Security security, List<Order> buyOrders, List<Order> sellOrders) {
+    }
+
     private void loadOrderBook() throws Exception {
-        LinkedList<Order> orders = new LinkedList<>();
+        long start = System.nanoTime();
+        Map<String, SecurityOrders> ordersByIsin = new HashMap<>();
+        int count = 0;
         try (Reader reader = new FileReader(orderBookCsvResource.getFile())) {
             try (CSVReader csvReader = new CSVReaderBuilder(reader).withSkipLines(1).build()) {
                 String[] line;
@@ -165,16 +217,17 @@ public class DataLoader {
                                 Integer.parseInt(line[9]),
                                 OrderStatus.QUEUED);
                     }
-                    orders.addFirst(order);
+                    SecurityOrders orders = ordersByIsin.computeIfAbsent(security.getIsin(),
+                            isin -> new SecurityOrders(security, new ArrayList<>(), new ArrayList<>()));
+                    (order.getSide() == Side.BUY ? orders.buyOrders() : orders.sellOrders()).add(order);
+                    count++;
                 }
             }
         }
-        Iterator<Order> it = orders.descendingIterator();
-        while (it.hasNext()) {
-            Order order = it.next();
-            order.getSecurity().getOrderBook().enqueue(order);
-        }
-        log.info("Order Book loaded");
+        // books of different securities share nothing, so they are built in parallel
+        ordersByIsin.values().parallelStream().forEach(orders ->
+                orders.security().getOrderBook().enqueueAll(orders.buyOrders(), orders.sellOrders()));
+        log.info("Order Book loaded: " + count + " orders in " + (System.nanoTime() - start) / 1_000_000 + " ms");
     }
 
     private void saveBrokers() throws Exception {
@@ -201,11 +254,14 @@ public class DataLoader {
                     joiner.add(String.valueOf(shareholder.getShareholderId()))
                             .add(shareholder.getName());
                     shareholderWriter.println(joiner);
-                    for (var entry : shareholder.getPositions().entrySet()) {
+                    for (Security security : securityRepository.allSecurities()) {
+                        int position = shareholder.getPosition(security);
+                        if (position == 0)
+                            continue;
                         StringJoiner posJoiner = new StringJoiner(",");
                         posJoiner.add(String.valueOf(shareholder.getShareholderId()))
-                                .add(entry.getKey().getIsin())
-                                .add(String.valueOf(entry.getValue()));
+                                .add(security.getIsin())
+                                .add(String.valueOf(position));
                         positionWriter.println(posJoiner);
                     }
                 }
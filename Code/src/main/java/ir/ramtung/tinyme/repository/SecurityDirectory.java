@@ -0,0 +1,43 @@
+package ir.ramtung.tinyme.repository;
+
+import ir.ramtung.tinyme.domain.entity.Security;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns every ISIN added to the {@link SecurityRepository} that owns the directory a dense {@code int} id, starting
+ * at zero. An id stays the same until the repository is cleared, whatever {@link Security} object currently trades the
+ * ISIN, so per-security state can live in plain arrays indexed by it once the ISIN of a request has been resolved.
+ */
+@Component
+public class SecurityDirectory {
+    private final ConcurrentHashMap<String, Integer> idByIsin = new ConcurrentHashMap<>();
+    private int nextId;
+
+    public int idOf(String isin) {
+        if (isin == null)
+            throw new IllegalArgumentException("A security needs an ISIN to get an id");
+        Integer id = idByIsin.get(isin);
+        return id != null ? id : assign(isin);
+    }
+
+    private synchronized int assign(String isin) {
+        return idByIsin.computeIfAbsent(isin, k -> nextId++);
+    }
+
+    // does not assign an id, so requests for unknown ISINs leave the directory alone
+    public int find(String isin) {
+        Integer id = isin == null ? null : idByIsin.get(isin);
+        return id != null ? id : Security.NO_ID;
+    }
+
+    public int size() {
+        return idByIsin.size();
+    }
+
+    public synchronized void clear() {
+        idByIsin.clear();
+        nextId = 0;
+    }
+}
@@ -1,35 +1,113 @@
 package ir.ramtung.tinyme.repository;
 
 import ir.ramtung.tinyme.domain.entity.Security;
-import ir.ramtung.tinyme.domain.entity.SecurityChangingResult;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @Component
 public class SecurityRepository {
-    private final HashMap<String, Security> securityByIsin = new HashMap<>();
+    private final SecurityDirectory directory;
+    // indexed by the directory id
+    private Security[] securityById = new Security[16];
+    // set while a request is handled and drained while none is, so the request lock orders the two
+    private boolean[] changed = new boolean[16];
+
+    @Autowired
+    public SecurityRepository(SecurityDirectory directory) {
+        this.directory = directory;
+    }
+
+    public SecurityRepository() {
+        this(new SecurityDirectory());
+    }
+
     public Security findSecurityByIsin(String isin) {
-        return securityByIsin.get(isin);
+        return findSecurityById(directory.find(isin));
+    }
+
+    public int findSecurityId(String isin) {
+        return directory.find(isin);
+    }
+
+    public Security findSecurityById(int securityId) {
+        return securityId >= 0 && securityId < securityById.length ? securityById[securityId] : null;
+    }
+
+    // looks the ISIN of a request up once, at ingress, so the matching path only indexes arrays
+    public int resolve(EnterOrderRq enterOrderRq) {
+        if (enterOrderRq.getSecurityId() == Security.UNRESOLVED_ID)
+            enterOrderRq.setSecurityId(directory.find(enterOrderRq.getSecurityIsin()));
+        return enterOrderRq.getSecurityId();
+    }
+
+    public int resolve(DeleteOrderRq deleteOrderRq) {
+        if (deleteOrderRq.getSecurityId() == Security.UNRESOLVED_ID)
+            deleteOrderRq.setSecurityId(directory.find(deleteOrderRq.getSecurityIsin()));
+        return deleteOrderRq.getSecurityId();
     }
 
     public void addSecurity(Security security) {
-        securityByIsin.put(security.getIsin(), security);
+        int securityId = directory.idOf(security.getIsin());
+        Security previous = findSecurityById(securityId);
+        security.setId(securityId);
+        security.setHolders(previous != null ? previous.getHolders() : new ArrayList<>());
+        if (securityId >= securityById.length) {
+            securityById = Arrays.copyOf(securityById, Math.max(securityId + 1, securityById.length * 2));
+            changed = Arrays.copyOf(changed, securityById.length);
+        }
+        securityById[securityId] = security;
     }
 
     public void clear() {
-        securityByIsin.clear();
+        Arrays.fill(securityById, null);
+        Arrays.fill(changed, false);
+        directory.clear();
     }
 
     public void replace(Security security) {
-        String isin = security.getIsin();
-        if (securityByIsin.containsKey(isin))
-            securityByIsin.put(isin, security);
-
+        int securityId = directory.find(security.getIsin());
+        Security previous = findSecurityById(securityId);
+        if (previous != null) {
+            security.setId(securityId);
+            security.setHolders(previous.getHolders());
+            securityById[securityId] = security;
+        }
     }
 
 
     Iterable<? extends Security> allSecurities() {
-        return securityByIsin.values();
+        List<Security> securities = new ArrayList<>();
+        for (Security security : securityById)
+            if (security != null)
+                securities.add(security);
+        return securities;
+    }
+
+    // the securities whose books or positions may have changed since the state was last saved
+    public void markChanged(int securityId) {
+        if (securityId >= 0 && securityId < changed.length)
+            changed[securityId] = true;
+    }
+
+    public void markChanged(String isin) {
+        markChanged(findSecurityId(isin));
+    }
+
+    Set<String> drainChanged() {
+        Set<String> drained = new HashSet<>();
+        for (int i = 0; i < changed.length; i++) {
+            if (changed[i] && securityById[i] != null)
+                drained.add(securityById[i].getIsin());
+            changed[i] = false;
+        }
+        return drained;
     }
 }
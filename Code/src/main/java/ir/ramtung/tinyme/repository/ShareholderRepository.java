@@ -1,13 +1,12 @@
 package ir.ramtung.tinyme.repository;
 
 import ir.ramtung.tinyme.domain.entity.Shareholder;
+import ir.ramtung.tinyme.util.LongObjectHashMap;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-
 @Component
 public class ShareholderRepository {
-    private final HashMap<Long, Shareholder> shareholderById = new HashMap<>();
+    private final LongObjectHashMap<Shareholder> shareholderById = new LongObjectHashMap<>();
     public Shareholder findShareholderById(long shareholderId) {
         return shareholderById.get(shareholderId);
     }
@@ -20,6 +19,6 @@ public class ShareholderRepository {
     }
 
     Iterable<? extends Shareholder> allShareholders() {
-        return shareholderById.values();
+        return shareholderById;
     }
 }
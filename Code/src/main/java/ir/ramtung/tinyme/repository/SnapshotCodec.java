@@ -0,0 +1,401 @@
+package ir.ramtung.tinyme.repository;
+
+import ir.ramtung.tinyme.domain.entity.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary layout of the parts of an engine snapshot. A part starts with a magic number, a version and its kind, and
+ * ends with a CRC32C of everything before it. The brokers part holds credit and reserved credit, the shareholders
+ * part the shareholders, and a security part one security with its order books and stop limit order books in queue
+ * order and the positions held in it. Orders are written with all their state, so they are restored exactly as they
+ * were queued. The manifest names the version of every part that makes up a snapshot. Numbers are little-endian.
+ */
+final class SnapshotCodec {
+    private static final int MAGIC = 0x4e534d54;
+    private static final byte VERSION = 2;
+    private static final int HEADER_SIZE = 6;
+    private static final byte MANIFEST = 0;
+    private static final byte BROKERS = 1;
+    private static final byte SHAREHOLDERS = 2;
+    private static final byte SECURITY = 3;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final byte PLAIN_ORDER = 0;
+    private static final byte ICEBERG_ORDER = 1;
+    private static final byte CONTINUOUS = 0;
+    private static final byte AUCTION = 1;
+
+    record Manifest(long sequence, long generation, Map<String, Long> parts) {
+    }
+
+    record SecurityImage(String isin, boolean auction, int tickSize, int lotSize, long price, int openingPrice,
+                         int tradableQuantity, List<Order> buyQueue, List<Order> sellQueue,
+                         List<StopLimitOrder> stopBuyQueue, List<StopLimitOrder> stopSellQueue,
+                         Map<Long, Integer> positions) {
+    }
+
+    private ByteBuffer buffer;
+
+    private SnapshotCodec(byte kind) {
+        buffer = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).put(VERSION).put(kind);
+    }
+
+    private ByteBuffer finish() {
+        ensure(4);
+        buffer.putInt(checksum(buffer, buffer.position()));
+        return buffer.flip();
+    }
+
+    static ByteBuffer encodeManifest(Manifest manifest) {
+        SnapshotCodec codec = new SnapshotCodec(MANIFEST);
+        codec.ensure(20);
+        codec.buffer.putLong(manifest.sequence()).putLong(manifest.generation()).putInt(manifest.parts().size());
+        for (Map.Entry<String, Long> part : manifest.parts().entrySet()) {
+            codec.putString(part.getKey());
+            codec.ensure(8);
+            codec.buffer.putLong(part.getValue());
+        }
+        return codec.finish();
+    }
+
+    static ByteBuffer encodeBrokers(Iterable<? extends Broker> brokers) {
+        SnapshotCodec codec = new SnapshotCodec(BROKERS);
+        int count = 0;
+        codec.buffer.putInt(0);
+        for (Broker broker : brokers) {
+            codec.ensure(24);
+            codec.buffer.putLong(broker.getBrokerId()).putLong(broker.getCredit()).putLong(broker.getReservedCredit());
+            codec.putString(broker.getName());
+            count++;
+        }
+        codec.buffer.putInt(HEADER_SIZE, count);
+        return codec.finish();
+    }
+
+    static ByteBuffer encodeShareholders(Iterable<? extends Shareholder> shareholders) {
+        SnapshotCodec codec = new SnapshotCodec(SHAREHOLDERS);
+        int count = 0;
+        codec.buffer.putInt(0);
+        for (Shareholder shareholder : shareholders) {
+            codec.ensure(8);
+            codec.buffer.putLong(shareholder.getShareholderId());
+            codec.putString(shareholder.getName());
+            count++;
+        }
+        codec.buffer.putInt(HEADER_SIZE, count);
+        return codec.finish();
+    }
+
+    static List<Broker> copyOf(Iterable<? extends Broker> brokers) {
+        List<Broker> copies = new ArrayList<>();
+        for (Broker broker : brokers)
+            copies.add(Broker.builder()
+                    .brokerId(broker.getBrokerId())
+                    .name(broker.getName())
+                    .credit(broker.getCredit())
+                    .reservedCredit(broker.getReservedCredit())
+                    .build());
+        return copies;
+    }
+
+    /**
+     * Copies what the part of {@code security} holds, so that it can be encoded while matching goes on; the orders
+     * are copied, along with the non-zero positions of its holders by shareholder id.
+     */
+    static SecurityImage imageOf(Security security) {
+        Map<Long, Integer> positions = new LinkedHashMap<>();
+        if (security.getHolders() != null) {
+            for (Shareholder shareholder : security.getHolders()) {
+                int position = shareholder.getPosition(security);
+                if (position != 0)
+                    positions.put(shareholder.getShareholderId(), position);
+            }
+        }
+        return new SecurityImage(security.getIsin(), security instanceof AuctionSecurity, security.getTickSize(),
+                security.getLotSize(), security.getPrice(), security.getOrderBook().getOpeningPrice(),
+                security.getOrderBook().getTradableQuantity(),
+                copyOrders(security.getOrderBook().getBuyQueue()), copyOrders(security.getOrderBook().getSellQueue()),
+                copyStopLimitOrders(security.getStopLimitOrderBook().getBuyQueue()),
+                copyStopLimitOrders(security.getStopLimitOrderBook().getSellQueue()), positions);
+    }
+
+    private static List<Order> copyOrders(List<Order> orders) {
+        List<Order> copies = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            if (order instanceof IcebergOrder iceberg)
+                copies.add(new IcebergOrder(order.getOrderId(), order.getSecurity(), order.getSide(),
+                        order.getInitialQuantity(), order.getWholeQuantity(), order.getPrice(), order.getBroker(),
+                        order.getShareholder(), order.getEntryTime(), order.getStatus(),
+                        order.getMinimumExecutionQuantity(), order.isUpdated(), iceberg.getPeakSize(),
+                        iceberg.getDisplayedQuantity()));
+            else
+                copies.add(new Order(order.getOrderId(), order.getSecurity(), order.getSide(),
+                        order.getInitialQuantity(), order.getWholeQuantity(), order.getPrice(), order.getBroker(),
+                        order.getShareholder(), order.getEntryTime(), order.getStatus(),
+                        order.getMinimumExecutionQuantity(), order.isUpdated()));
+        }
+        return copies;
+    }
+
+    private static List<StopLimitOrder> copyStopLimitOrders(List<StopLimitOrder> orders) {
+        List<StopLimitOrder> copies = new ArrayList<>(orders.size());
+        for (StopLimitOrder order : orders)
+            copies.add(new StopLimitOrder(order.getOrderId(), order.getSecurity(), order.getSide(),
+                    order.getInitialQuantity(), order.getWholeQuantity(), order.getPrice(), order.getBroker(),
+                    order.getShareholder(), order.getEntryTime(), order.getStatus(),
+                    order.getMinimumExecutionQuantity(), order.isUpdated(), order.getStopPrice(), order.getReqId()));
+        return copies;
+    }
+
+    static ByteBuffer encodeSecurity(SecurityImage security) {
+        SnapshotCodec codec = new SnapshotCodec(SECURITY);
+        codec.putString(security.isin());
+        codec.ensure(25);
+        codec.buffer.put(security.auction() ? AUCTION : CONTINUOUS)
+                .putInt(security.tickSize()).putInt(security.lotSize()).putLong(security.price())
+                .putInt(security.openingPrice())
+                .putInt(security.tradableQuantity());
+        codec.putOrders(security.buyQueue());
+        codec.putOrders(security.sellQueue());
+        codec.putStopLimitOrders(security.stopBuyQueue());
+        codec.putStopLimitOrders(security.stopSellQueue());
+
+        codec.ensure(4);
+        codec.buffer.putInt(security.positions().size());
+        for (Map.Entry<Long, Integer> position : security.positions().entrySet()) {
+            codec.ensure(12);
+            codec.buffer.putLong(position.getKey()).putInt(position.getValue());
+        }
+        return codec.finish();
+    }
+
+    private void putOrders(List<Order> orders) {
+        ensure(4);
+        buffer.putInt(orders.size());
+        for (Order order : orders) {
+            boolean iceberg = order instanceof IcebergOrder;
+            ensure(1);
+            buffer.put(iceberg ? ICEBERG_ORDER : PLAIN_ORDER);
+            putOrder(order);
+            if (iceberg) {
+                IcebergOrder icebergOrder = (IcebergOrder) order;
+                ensure(8);
+                buffer.putInt(icebergOrder.getPeakSize()).putInt(icebergOrder.getDisplayedQuantity());
+            }
+        }
+    }
+
+    private void putStopLimitOrders(List<StopLimitOrder> orders) {
+        ensure(4);
+        buffer.putInt(orders.size());
+        for (StopLimitOrder order : orders) {
+            putOrder(order);
+            ensure(16);
+            buffer.putLong(order.getStopPrice()).putLong(order.getReqId());
+        }
+    }
+
+    private void putOrder(Order order) {
+        ensure(59);
+        buffer.putLong(order.getOrderId())
+                .put((byte) order.getSide().ordinal())
+                .putInt(order.getInitialQuantity())
+                .putInt(order.getWholeQuantity())
+                .putInt(order.getPrice())
+                .putLong(order.getBroker().getBrokerId())
+                .putLong(order.getShareholder().getShareholderId())
+                .put((byte) order.getStatus().ordinal())
+                .putLong(order.getMinimumExecutionQuantity())
+                .put((byte) (order.isUpdated() ? 1 : 0));
+        LocalDateTime entryTime = order.getEntryTime();
+        if (entryTime == null) {
+            buffer.putLong(NO_TIME).putInt(0);
+        } else {
+            buffer.putLong(entryTime.toEpochSecond(ZoneOffset.UTC)).putInt(entryTime.getNano());
+        }
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensure(2);
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE)
+            throw new IllegalArgumentException("String too long for a snapshot: " + value);
+        ensure(2 + bytes.length);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes)
+            return;
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < bytes)
+            capacity *= 2;
+        ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        grown.put(buffer.flip());
+        buffer = grown;
+    }
+
+    private static int checksum(ByteBuffer buffer, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, length));
+        return (int) crc.getValue();
+    }
+
+    static boolean isIntact(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int length = buffer.limit() - 4;
+        return length >= HEADER_SIZE && buffer.getInt(0) == MAGIC && buffer.get(4) == VERSION
+                && buffer.getInt(length) == checksum(buffer, length);
+    }
+
+    private static ByteBuffer body(ByteBuffer buffer, byte kind) {
+        if (!isIntact(buffer) || buffer.get(5) != kind)
+            throw new IllegalStateException("Damaged snapshot part");
+        return buffer.position(HEADER_SIZE);
+    }
+
+    static Manifest decodeManifest(ByteBuffer buffer) {
+        body(buffer, MANIFEST);
+        long sequence = buffer.getLong();
+        long generation = buffer.getLong();
+        Map<String, Long> parts = new LinkedHashMap<>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            String name = getString(buffer);
+            parts.put(name, buffer.getLong());
+        }
+        return new Manifest(sequence, generation, parts);
+    }
+
+    static void decodeBrokers(ByteBuffer buffer, BrokerRepository brokerRepository) {
+        body(buffer, BROKERS);
+        for (int i = buffer.getInt(); i > 0; i--) {
+            long brokerId = buffer.getLong();
+            long credit = buffer.getLong();
+            long reservedCredit = buffer.getLong();
+            brokerRepository.addBroker(Broker.builder()
+                    .brokerId(brokerId)
+                    .name(getString(buffer))
+                    .credit(credit)
+                    .reservedCredit(reservedCredit)
+                    .build());
+        }
+    }
+
+    static void decodeShareholders(ByteBuffer buffer, ShareholderRepository shareholderRepository) {
+        body(buffer, SHAREHOLDERS);
+        for (int i = buffer.getInt(); i > 0; i--) {
+            long shareholderId = buffer.getLong();
+            shareholderRepository.addShareholder(Shareholder.builder()
+                    .shareholderId(shareholderId)
+                    .name(getString(buffer))
+                    .build());
+        }
+    }
+
+    /**
+     * Adds the security of the part to the repository; its brokers and shareholders must have been decoded already.
+     */
+    static Security decodeSecurity(ByteBuffer buffer, BrokerRepository brokerRepository,
+                                   ShareholderRepository shareholderRepository, SecurityRepository securityRepository) {
+        body(buffer, SECURITY);
+        String isin = getString(buffer);
+        byte kind = buffer.get();
+        int tickSize = buffer.getInt();
+        int lotSize = buffer.getInt();
+        long price = buffer.getLong();
+        int openingPrice = buffer.getInt();
+        int tradableQuantity = buffer.getInt();
+        Security security = kind == AUCTION
+                ? AuctionSecurity.builder().isin(isin).tickSize(tickSize).lotSize(lotSize).price(price).build()
+                : Security.builder().isin(isin).tickSize(tickSize).lotSize(lotSize).price(price).build();
+        security.getOrderBook().restoreOpeningPrice(openingPrice, tradableQuantity);
+        for (int side = 0; side < 2; side++) {
+            for (int j = buffer.getInt(); j > 0; j--)
+                security.getOrderBook().restoreQueued(getOrder(buffer, security, brokerRepository, shareholderRepository));
+        }
+        for (int side = 0; side < 2; side++) {
+            for (int j = buffer.getInt(); j > 0; j--)
+                security.getStopLimitOrderBook().restoreQueued(getStopLimitOrder(buffer, security, brokerRepository, shareholderRepository));
+        }
+        securityRepository.addSecurity(security);
+        for (int i = buffer.getInt(); i > 0; i--) {
+            Shareholder shareholder = shareholderRepository.findShareholderById(buffer.getLong());
+            shareholder.incPosition(security, buffer.getInt());
+        }
+        return security;
+    }
+
+    private record OrderFields(long orderId, Side side, int initialQuantity, int quantity, int price, Broker broker,
+                               Shareholder shareholder, OrderStatus status, long minimumExecutionQuantity,
+                               boolean isUpdated, LocalDateTime entryTime) {
+    }
+
+    private static OrderFields getOrderFields(ByteBuffer buffer, BrokerRepository brokerRepository,
+                                              ShareholderRepository shareholderRepository) {
+        long orderId = buffer.getLong();
+        Side side = Side.values()[buffer.get()];
+        int initialQuantity = buffer.getInt();
+        int quantity = buffer.getInt();
+        int price = buffer.getInt();
+        Broker broker = brokerRepository.findBrokerById(buffer.getLong());
+        Shareholder shareholder = shareholderRepository.findShareholderById(buffer.getLong());
+        OrderStatus status = OrderStatus.values()[buffer.get()];
+        long minimumExecutionQuantity = buffer.getLong();
+        boolean isUpdated = buffer.get() != 0;
+        long epochSecond = buffer.getLong();
+        int nanos = buffer.getInt();
+        LocalDateTime entryTime = epochSecond == NO_TIME ? null
+                : LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+        return new OrderFields(orderId, side, initialQuantity, quantity, price, broker, shareholder, status,
+                minimumExecutionQuantity, isUpdated, entryTime);
+    }
+
+    private static Order getOrder(ByteBuffer buffer, Security security, BrokerRepository brokerRepository,
+                                  ShareholderRepository shareholderRepository) {
+        byte type = buffer.get();
+        OrderFields f = getOrderFields(buffer, brokerRepository, shareholderRepository);
+        if (type == ICEBERG_ORDER) {
+            int peakSize = buffer.getInt();
+            int displayedQuantity = buffer.getInt();
+            return new IcebergOrder(f.orderId(), security, f.side(), f.initialQuantity(), f.quantity(), f.price(),
+                    f.broker(), f.shareholder(), f.entryTime(), f.status(), f.minimumExecutionQuantity(),
+                    f.isUpdated(), peakSize, displayedQuantity);
+        }
+        return new Order(f.orderId(), security, f.side(), f.initialQuantity(), f.quantity(), f.price(), f.broker(),
+                f.shareholder(), f.entryTime(), f.status(), f.minimumExecutionQuantity(), f.isUpdated());
+    }
+
+    private static StopLimitOrder getStopLimitOrder(ByteBuffer buffer, Security security,
+                                                    BrokerRepository brokerRepository,
+                                                    ShareholderRepository shareholderRepository) {
+        OrderFields f = getOrderFields(buffer, brokerRepository, shareholderRepository);
+        long stopPrice = buffer.getLong();
+        long requestId = buffer.getLong();
+        return new StopLimitOrder(f.orderId(), security, f.side(), f.initialQuantity(), f.quantity(), f.price(),
+                f.broker(), f.shareholder(), f.entryTime(), f.status(), f.minimumExecutionQuantity(), f.isUpdated(),
+                stopPrice, requestId);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
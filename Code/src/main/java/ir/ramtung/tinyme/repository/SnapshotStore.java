@@ -0,0 +1,231 @@
+package ir.ramtung.tinyme.repository;
+
+import ir.ramtung.tinyme.domain.entity.Broker;
+import ir.ramtung.tinyme.domain.entity.Security;
+import ir.ramtung.tinyme.domain.entity.Shareholder;
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.journal.RequestJournal;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Incremental binary snapshots of the engine state in {@code snapshotDir}, written every
+ * {@code snapshotIntervalSeconds} and at shutdown. A snapshot is a manifest naming one version of each part: the
+ * brokers, the shareholders, and one part per security with its books and the positions in it. Only the securities
+ * marked changed in {@link SecurityRepository} since the previous snapshot are rewritten, along with the brokers.
+ * <p>
+ * Changed parts are copied while {@link OrderHandler} is idle, so a snapshot matches the journal exactly up to its
+ * sequence number; the copies are encoded once matching has resumed, written to new files and forced off the matching
+ * path, and the snapshot is committed by renaming the new manifest into place. Superseded parts and the journal
+ * segments the snapshot covers are then discarded. At startup every part named by the manifest is mapped, checked and decoded in one pass.
+ */
+@Component
+public class SnapshotStore {
+    private static final String MANIFEST = "manifest";
+    private static final String BROKERS = "brokers";
+    private static final String SHAREHOLDERS = "shareholders";
+    private static final String SECURITY_PREFIX = "security-";
+    private static final String SUFFIX = ".part";
+
+    private record Capture(long sequence, List<Broker> brokers, List<Shareholder> shareholders,
+                           List<SnapshotCodec.SecurityImage> securities, Set<String> changedIsins) {
+    }
+
+    private final Logger log = Logger.getLogger(this.getClass().getName());
+    private final BrokerRepository brokerRepository;
+    private final ShareholderRepository shareholderRepository;
+    private final SecurityRepository securityRepository;
+    private final OrderHandler orderHandler;
+    private final RequestJournal requestJournal;
+    private final Path directory;
+    private final long intervalSeconds;
+    private final Map<String, Long> committedParts = new HashMap<>();
+    private long generation;
+    private ScheduledExecutorService writer;
+
+    public SnapshotStore(BrokerRepository brokerRepository, ShareholderRepository shareholderRepository,
+                         SecurityRepository securityRepository, OrderHandler orderHandler,
+                         RequestJournal requestJournal,
+                         @Value("${snapshotDir:}") String directory,
+                         @Value("${snapshotIntervalSeconds:60}") long intervalSeconds) {
+        this.brokerRepository = brokerRepository;
+        this.shareholderRepository = shareholderRepository;
+        this.securityRepository = securityRepository;
+        this.orderHandler = orderHandler;
+        this.requestJournal = requestJournal;
+        this.directory = directory.isEmpty() ? null : Paths.get(directory);
+        this.intervalSeconds = intervalSeconds;
+        if (isEnabled())
+            orderHandler.trackChanges();
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void startWriting() {
+        if (directory == null || intervalSeconds <= 0 || writer != null)
+            return;
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "snapshot-writer"));
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshot();
+            } catch (RuntimeException ex) {
+                log.log(Level.SEVERE, "Snapshot failed", ex);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private static String partOf(String isin) {
+        return SECURITY_PREFIX + isin;
+    }
+
+    // copies what changed while no request is being handled; the copies are encoded once matching has resumed
+    private Capture capture() {
+        long sequence = requestJournal.lastSequence();
+        Set<String> changedIsins = securityRepository.drainChanged();
+        List<Shareholder> shareholders = null;
+        if (!committedParts.containsKey(SHAREHOLDERS)) {
+            shareholders = new ArrayList<>();
+            shareholderRepository.allShareholders().forEach(shareholders::add);
+        }
+        // each security keeps its holders, so only the positions in the changed securities are visited
+        List<SnapshotCodec.SecurityImage> images = new ArrayList<>();
+        for (Security security : securityRepository.allSecurities()) {
+            if (changedIsins.contains(security.getIsin()) || !committedParts.containsKey(partOf(security.getIsin())))
+                images.add(SnapshotCodec.imageOf(security));
+        }
+        return new Capture(sequence, SnapshotCodec.copyOf(brokerRepository.allBrokers()), shareholders, images,
+                changedIsins);
+    }
+
+    private static Map<String, ByteBuffer> encode(Capture capture) {
+        Map<String, ByteBuffer> parts = new LinkedHashMap<>();
+        parts.put(BROKERS, SnapshotCodec.encodeBrokers(capture.brokers()));
+        if (capture.shareholders() != null)
+            parts.put(SHAREHOLDERS, SnapshotCodec.encodeShareholders(capture.shareholders()));
+        for (SnapshotCodec.SecurityImage security : capture.securities())
+            parts.put(partOf(security.isin()), SnapshotCodec.encodeSecurity(security));
+        return parts;
+    }
+
+    public synchronized long takeSnapshot() {
+        Capture capture = orderHandler.whileIdle(this::capture);
+        Map<String, ByteBuffer> written = encode(capture);
+        long nextGeneration = generation + 1;
+        Map<String, Long> parts = new LinkedHashMap<>(committedParts);
+        try {
+            Files.createDirectories(directory);
+            for (Map.Entry<String, ByteBuffer> part : written.entrySet()) {
+                write(fileOf(part.getKey(), nextGeneration), part.getValue());
+                parts.put(part.getKey(), nextGeneration);
+            }
+            Path temporary = directory.resolve(MANIFEST + ".tmp");
+            write(temporary, SnapshotCodec.encodeManifest(
+                    new SnapshotCodec.Manifest(capture.sequence(), nextGeneration, parts)));
+            Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            capture.changedIsins().forEach(securityRepository::markChanged);
+            throw new UncheckedIOException(ex);
+        }
+        for (String part : written.keySet()) {
+            Long superseded = committedParts.get(part);
+            if (superseded != null)
+                deleteQuietly(fileOf(part, superseded));
+        }
+        committedParts.clear();
+        committedParts.putAll(parts);
+        generation = nextGeneration;
+        requestJournal.discardThrough(capture.sequence());
+        log.info("Snapshot " + generation + " taken at sequence " + capture.sequence() + ", "
+                + written.size() + " of " + parts.size() + " parts written");
+        return capture.sequence();
+    }
+
+    /**
+     * Loads the committed snapshot into the repositories and returns its sequence number, or -1 if there is none.
+     */
+    public synchronized long loadLatest() throws IOException {
+        if (directory == null || !Files.exists(directory.resolve(MANIFEST)))
+            return -1;
+        SnapshotCodec.Manifest manifest = SnapshotCodec.decodeManifest(map(directory.resolve(MANIFEST)));
+        brokerRepository.clear();
+        shareholderRepository.clear();
+        securityRepository.clear();
+        SnapshotCodec.decodeBrokers(map(fileOf(BROKERS, manifest.parts().get(BROKERS))), brokerRepository);
+        SnapshotCodec.decodeShareholders(map(fileOf(SHAREHOLDERS, manifest.parts().get(SHAREHOLDERS))),
+                shareholderRepository);
+        for (Map.Entry<String, Long> part : manifest.parts().entrySet()) {
+            if (part.getKey().startsWith(SECURITY_PREFIX))
+                SnapshotCodec.decodeSecurity(map(fileOf(part.getKey(), part.getValue())), brokerRepository,
+                        shareholderRepository, securityRepository);
+        }
+        securityRepository.drainChanged();
+        committedParts.clear();
+        committedParts.putAll(manifest.parts());
+        generation = manifest.generation();
+        log.info("Snapshot " + generation + " at sequence " + manifest.sequence() + " loaded");
+        return manifest.sequence();
+    }
+
+    private Path fileOf(String part, long version) {
+        return directory.resolve(part + "-" + version + SUFFIX);
+    }
+
+    private static void write(Path path, ByteBuffer data) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining())
+                channel.write(data);
+            channel.force(true);
+        }
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "Could not delete superseded snapshot part " + path, ex);
+        }
+    }
+
+    @PreDestroy
+    public void stopWriting() throws InterruptedException {
+        if (writer == null)
+            return;
+        writer.shutdown();
+        writer.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,119 @@
+package ir.ramtung.tinyme.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from primitive {@code long} keys to {@code long} counters. Absent keys read as zero and
+ * a counter that drops back to zero is removed, so the table only holds keys that currently have a balance.
+ */
+public class LongLongHashMap {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongLongHashMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private int find(long key) {
+        int slot = slotOf(key);
+        while (used[slot]) {
+            if (keys[slot] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public long get(long key) {
+        int slot = find(key);
+        return (slot < 0) ? 0 : values[slot];
+    }
+
+    public long addTo(long key, long delta) {
+        int slot = slotOf(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                long value = values[slot] + delta;
+                if (value == 0) {
+                    shiftBack(slot);
+                    size--;
+                } else {
+                    values[slot] = value;
+                }
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (delta == 0)
+            return 0;
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size > resizeThreshold)
+            rehash(keys.length << 1);
+        return delta;
+    }
+
+    private void shiftBack(int emptied) {
+        int slot = emptied;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (!used[slot])
+                break;
+            int home = slotOf(keys[slot]);
+            boolean movable = (emptied <= slot) ? (home <= emptied || home > slot) : (home <= emptied && home > slot);
+            if (movable) {
+                keys[emptied] = keys[slot];
+                values[emptied] = values[slot];
+                emptied = slot;
+            }
+        }
+        used[emptied] = false;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (!oldUsed[i])
+                continue;
+            int slot = slotOf(oldKeys[i]);
+            while (used[slot])
+                slot = (slot + 1) & mask;
+            used[slot] = true;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+}
@@ -0,0 +1,58 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.CreditLedger;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CreditLedgerTest {
+    @Test
+    void reservations_and_debits_share_the_available_credit() {
+        CreditLedger ledger = new CreditLedger(1_000, 0);
+        assertThat(ledger.tryReserve(1_000)).isFalse();
+        assertThat(ledger.tryReserve(600)).isTrue();
+        assertThat(ledger.tryDebit(500)).isFalse();
+        assertThat(ledger.tryDebit(400)).isTrue();
+        assertThat(ledger.getCredit()).isEqualTo(600);
+        assertThat(ledger.getReservedCredit()).isEqualTo(600);
+
+        ledger.release(600);
+        assertThat(ledger.getReservedCredit()).isZero();
+        assertThat(ledger.getAvailableCredit()).isEqualTo(600);
+    }
+
+    @Test
+    void concurrent_debits_never_overdraw() throws Exception {
+        CreditLedger ledger = new CreditLedger(100_000, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> successes = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            successes.add(executor.submit(() -> {
+                int count = 0;
+                for (int i = 0; i < 10_000; i++) {
+                    if (ledger.tryDebit(3))
+                        count++;
+                    if (i % 10 == 0 && ledger.tryReserve(7))
+                        ledger.release(7);
+                }
+                return count;
+            }));
+        }
+        int debited = 0;
+        for (Future<Integer> success : successes)
+            debited += success.get();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(debited).isEqualTo(100_000 / 3);
+        assertThat(ledger.getCredit()).isEqualTo(100_000 - 3L * debited);
+        assertThat(ledger.getReservedCredit()).isZero();
+    }
+}
@@ -3,6 +3,7 @@ package ir.ramtung.tinyme.domain;
 import ir.ramtung.tinyme.config.MockedJMSTestConfig;
 import ir.ramtung.tinyme.domain.entity.*;
 import ir.ramtung.tinyme.domain.service.Matcher;
+import ir.ramtung.tinyme.repository.SecurityRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +11,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -21,6 +23,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 @Import(MockedJMSTestConfig.class)
 @DirtiesContext
 public class MatcherTest {
+    private SecurityRepository securityRepository;
     private Security security;
     private Broker broker;
     private Shareholder shareholder;
@@ -31,7 +34,9 @@ public class MatcherTest {
 
     @BeforeEach
     void setupOrderBook() {
-        security = Security.builder().build();
+        securityRepository = new SecurityRepository();
+        security = Security.builder().isin("ABC").build();
+        securityRepository.addSecurity(security);
         broker = Broker.builder().credit(100_000_000L).build();
         shareholder = Shareholder.builder().build();
         shareholder.incPosition(security, 100_000);
@@ -109,7 +114,8 @@ public class MatcherTest {
 
     @Test
     void iceberg_order_in_queue_matched_completely_after_three_rounds() {
-        security = Security.builder().build();
+        security = Security.builder().isin("BCD").build();
+        securityRepository.addSecurity(security);
         broker = Broker.builder().build();
         orderBook = security.getOrderBook();
         orders = Arrays.asList(
@@ -135,6 +141,7 @@ public class MatcherTest {
     @Test
     void insert_iceberg_and_match_until_quantity_is_less_than_peak_size() {
         security = Security.builder().isin("TEST").build();
+        securityRepository.addSecurity(security);
         shareholder.incPosition(security, 1_000);
         security.getOrderBook().enqueue(
                 new Order(1, security, Side.SELL, 100, 10, broker, shareholder)
@@ -150,4 +157,61 @@ public class MatcherTest {
         assertThat(security.getOrderBook().getBuyQueue().get(0).getQuantity()).isEqualTo(20);
 
     }
+
+    @Test
+    void results_stay_valid_after_later_matches() {
+        MatchResult first = matcher.match(new Order(11, security, Side.SELL, 100, 15600, broker, shareholder));
+        MatchResult second = matcher.match(new Order(12, security, Side.SELL, 100, 15600, broker, shareholder));
+        assertThat(first.trades()).extracting("sellOrderId").containsExactly(11L);
+        assertThat(second.trades()).extracting("sellOrderId").containsExactly(12L);
+    }
+
+    @Test
+    void allocation_free_mode_produces_the_same_trades() {
+        Matcher reusingMatcher = new Matcher();
+        reusingMatcher.setAllocationFree(true);
+        Order order = new Order(11, security, Side.SELL, 500, 15500, broker, shareholder);
+        Trade trade1 = new Trade(security, 15700, 304, orders.get(0), order);
+        Trade trade2 = new Trade(security, 15500, 43, orders.get(1), order);
+        MatchResult result = reusingMatcher.match(order);
+        assertThat(result.remainder().getQuantity()).isEqualTo(153);
+        assertThat(result.trades()).containsExactly(trade1, trade2);
+    }
+
+    @Test
+    void allocation_free_mode_reuses_the_result_and_its_trades_until_detached() {
+        Matcher reusingMatcher = new Matcher();
+        reusingMatcher.setAllocationFree(true);
+        MatchResult first = reusingMatcher.match(new Order(11, security, Side.SELL, 100, 15600, broker, shareholder));
+        MatchResult detached = first.detach();
+        Trade firstTrade = first.trades().get(0);
+        MatchResult second = reusingMatcher.match(new Order(12, security, Side.SELL, 100, 15600, broker, shareholder));
+        assertThat(second).isSameAs(first);
+        assertThat(second.trades().get(0)).isSameAs(firstTrade);
+        assertThat(second.trades()).extracting("sellOrderId").containsExactly(12L);
+        assertThat(detached.trades()).extracting("sellOrderId").containsExactly(11L);
+    }
+
+    @Test
+    void allocation_free_mode_allocates_nothing_per_order_once_warmed_up() {
+        Security liquid = Security.builder().isin("LIQUID").build();
+        new SecurityRepository().addSecurity(liquid);
+        shareholder.incPosition(liquid, 1_000_000);
+        liquid.getOrderBook().enqueue(new Order(1, liquid, Side.SELL, 1_000_000, 100, broker, shareholder));
+        Matcher reusingMatcher = new Matcher();
+        reusingMatcher.setAllocationFree(true);
+        Order[] incoming = new Order[20_000];
+        for (int i = 0; i < incoming.length; i++)
+            incoming[i] = new Order(i + 2, liquid, BUY, 3, 100, broker, shareholder);
+        for (int i = 0; i < incoming.length / 2; i++)
+            reusingMatcher.execute(incoming[i]);
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = incoming.length / 2; i < incoming.length; i++)
+            reusingMatcher.execute(incoming[i]);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertThat(allocated).isLessThan(incoming.length / 2);
+    }
 }
@@ -1,22 +1,29 @@
 package ir.ramtung.tinyme.domain;
 
 import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.repository.SecurityRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 class OrderBookTest {
+    private SecurityRepository securityRepository;
     private Security security;
     private List<Order> orders;
+    private Shareholder shareholder;
     @BeforeEach
     void setupOrderBook() {
-        security = Security.builder().build();
+        securityRepository = new SecurityRepository();
+        security = Security.builder().isin("ABC").build();
+        securityRepository.addSecurity(security);
         Broker broker = Broker.builder().build();
-        Shareholder shareholder = Shareholder.builder().build();
+        shareholder = Shareholder.builder().build();
         shareholder.incPosition(security, 100_000);
         orders = Arrays.asList(
                 new Order(1, security, Side.BUY, 304, 15700, broker, shareholder),
@@ -76,4 +83,106 @@ class OrderBookTest {
         orderBook.removeByOrderId(Side.SELL, 10);
         assertThat(orderBook.getSellQueue()).isEqualTo(orders.subList(5, 9));
     }
-}
\ No newline at end of file
+
+    @Test
+    void keeps_time_priority_inside_a_price_level() {
+        OrderBook orderBook = security.getOrderBook();
+        assertThat(orderBook.getBuyQueue()).extracting("orderId").containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(orderBook.getSellQueue()).extracting("orderId").containsExactly(6L, 7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    void best_order_moves_to_next_level_when_first_level_is_emptied() {
+        OrderBook orderBook = security.getOrderBook();
+        orderBook.removeByOrderId(Side.SELL, 6);
+        Order buy = new Order(11, security, Side.BUY, 10, 15810, Broker.builder().build(), Shareholder.builder().build());
+        assertThat(orderBook.matchWithFirst(buy)).isEqualTo(orders.get(6));
+        orderBook.removeFirst(Side.SELL);
+        orderBook.removeFirst(Side.SELL);
+        assertThat(orderBook.matchWithFirst(buy)).isNull();
+    }
+
+    @Test
+    void put_back_order_goes_to_the_head_of_its_price_level() {
+        OrderBook orderBook = security.getOrderBook();
+        Order order = orders.get(3);
+        orderBook.removeByOrderId(Side.BUY, 4);
+        orderBook.putBack(order);
+        assertThat(orderBook.getBuyQueue()).extracting("orderId").containsExactly(1L, 2L, 4L, 3L, 5L);
+    }
+
+    @Test
+    void restores_an_order_from_the_middle_of_a_price_level_to_its_head() {
+        OrderBook orderBook = security.getOrderBook();
+        orderBook.restoreOrder(orders.get(7).snapshotWithQuantity(100));
+        assertThat(orderBook.getSellQueue()).extracting("orderId").containsExactly(6L, 8L, 7L, 9L, 10L);
+        assertThat(orderBook.findByOrderId(Side.SELL, 8).getQuantity()).isEqualTo(100);
+        orderBook.removeByOrderId(Side.SELL, 7);
+        assertThat(orderBook.getSellQueue()).extracting("orderId").containsExactly(6L, 8L, 9L, 10L);
+    }
+
+    @Test
+    void tracks_queued_sell_quantity_of_a_shareholder() {
+        OrderBook orderBook = security.getOrderBook();
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(1840);
+        orderBook.removeByOrderId(Side.SELL, 6);
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(1490);
+        orderBook.findByOrderId(Side.SELL, 7).decreaseQuantity(85);
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(1405);
+        orderBook.restoreOrder(orders.get(6).snapshotWithQuantity(285));
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(1490);
+        assertThat(orderBook.totalSellQuantityByShareholder(Shareholder.builder().shareholderId(2).build())).isZero();
+    }
+
+    @Test
+    void opening_price_is_found_from_cumulative_depth_of_price_levels() {
+        OrderBook orderBook = security.getOrderBook();
+        orderBook.enqueue(new Order(11, security, Side.SELL, 1000, 15450, Broker.builder().build(), shareholder));
+        assertThat(orderBook.calculateOpeningPrice(15000)).isEqualTo(15450);
+        assertThat(orderBook.getTradableQuantity()).isEqualTo(1000);
+    }
+
+    @Test
+    void opening_price_is_zero_when_no_order_is_executable() {
+        assertThat(security.getOrderBook().calculateOpeningPrice(15600)).isZero();
+        assertThat(security.getOrderBook().getTradableQuantity()).isZero();
+    }
+
+    @Test
+    void opening_price_follows_changes_made_after_it_was_first_calculated() {
+        OrderBook orderBook = security.getOrderBook();
+        assertThat(orderBook.calculateOpeningPrice(15000)).isZero();
+
+        orderBook.enqueue(new Order(11, security, Side.SELL, 1000, 15450, Broker.builder().build(), shareholder));
+        orderBook.removeByOrderId(Side.BUY, 3);
+        assertThat(orderBook.calculateOpeningPrice(15000)).isEqualTo(15450);
+        assertThat(orderBook.getTradableQuantity()).isEqualTo(873);
+
+        orderBook.enqueue(new Order(12, security, Side.BUY, 700, 15455, Broker.builder().build(), shareholder));
+        assertThat(orderBook.calculateOpeningPrice(16000)).isEqualTo(15455);
+        assertThat(orderBook.getTradableQuantity()).isEqualTo(1000);
+    }
+
+    @Test
+    void bulk_loading_builds_the_same_book_as_enqueueing_one_by_one() {
+        List<Order> shuffled = new ArrayList<>(orders.stream()
+                .map(order -> new Order(order.getOrderId(), order.getSecurity(), order.getSide(), order.getQuantity(),
+                        order.getPrice(), order.getBroker(), order.getShareholder()))
+                .toList());
+        Collections.reverse(shuffled);
+        List<Order> buys = new ArrayList<>(shuffled.stream().filter(order -> order.getSide() == Side.BUY).toList());
+        List<Order> sells = new ArrayList<>(shuffled.stream().filter(order -> order.getSide() == Side.SELL).toList());
+        OrderBook bulk = new OrderBook();
+        bulk.enqueueAll(buys, sells);
+
+        OrderBook expected = new OrderBook();
+        shuffled.forEach(expected::enqueue);
+        assertThat(bulk.getBuyQueue()).extracting(Order::getOrderId)
+                .containsExactlyElementsOf(expected.getBuyQueue().stream().map(Order::getOrderId).toList());
+        assertThat(bulk.getSellQueue()).extracting(Order::getOrderId)
+                .containsExactlyElementsOf(expected.getSellQueue().stream().map(Order::getOrderId).toList());
+        assertThat(bulk.getBuyQueue()).extracting(Order::getOrderId).containsExactly(1L, 2L, 4L, 3L, 5L);
+        assertThat(bulk.findByOrderId(Side.SELL, 8)).isNotNull();
+        assertThat(bulk.totalSellQuantityByShareholder(shareholder)).isEqualTo(1840);
+    }
+}
@@ -47,7 +47,7 @@ public class OrderHandlerCreditCheckRollbackTest {
         shareholderRepository.clear();
         brokerRepository.clear();
 
-        security = Security.builder().build();
+        security = Security.builder().isin("ABC").build();
         securityRepository.addSecurity(security);
 
         shareholder = Shareholder.builder().build();
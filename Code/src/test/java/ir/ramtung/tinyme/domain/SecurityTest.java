@@ -6,6 +6,7 @@ import ir.ramtung.tinyme.domain.service.Matcher;
 import ir.ramtung.tinyme.messaging.exception.InvalidRequestException;
 import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
 import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.repository.SecurityRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +24,7 @@ import static org.assertj.core.api.Assertions.*;
 @SpringBootTest
 @Import(MockedJMSTestConfig.class)
 class SecurityTest {
+    private SecurityRepository securityRepository;
     private Security security;
     private Broker broker;
     private Shareholder shareholder;
@@ -32,7 +34,9 @@ class SecurityTest {
 
     @BeforeEach
     void setupOrderBook() {
-        security = Security.builder().build();
+        securityRepository = new SecurityRepository();
+        security = Security.builder().isin("ABC").build();
+        securityRepository.addSecurity(security);
         broker = Broker.builder().brokerId(0).credit(1_000_000L).build();
         shareholder = Shareholder.builder().shareholderId(0).build();
         shareholder.incPosition(security, 100_000);
@@ -107,7 +111,8 @@ class SecurityTest {
 
     @Test
     void increasing_iceberg_peak_size_changes_priority() {
-        security = Security.builder().build();
+        security = Security.builder().isin("BCD").build();
+        securityRepository.addSecurity(security);
         broker = Broker.builder().credit(1_000_000L).build();
         orders = Arrays.asList(
                 new Order(1, security, BUY, 304, 15700, broker, shareholder),
@@ -125,7 +130,8 @@ class SecurityTest {
 
     @Test
     void decreasing_iceberg_quantity_to_amount_larger_than_peak_size_does_not_changes_priority() {
-        security = Security.builder().build();
+        security = Security.builder().isin("BCD").build();
+        securityRepository.addSecurity(security);
         broker = Broker.builder().build();
         orders = Arrays.asList(
                 new Order(1, security, BUY, 304, 15700, broker, shareholder),
@@ -143,6 +149,7 @@ class SecurityTest {
     @Test
     void update_iceberg_that_loses_priority_with_no_trade_works() {
         security = Security.builder().isin("TEST").build();
+        securityRepository.addSecurity(security);
         broker = Broker.builder().brokerId(1).credit(100).build();
 
         security.getOrderBook().enqueue(
@@ -159,6 +166,7 @@ class SecurityTest {
     @Test
     void update_iceberg_order_decrease_peak_size() {
         security = Security.builder().isin("TEST").build();
+        securityRepository.addSecurity(security);
         security.getOrderBook().enqueue(
                 new IcebergOrder(1, security, BUY, 20, 10, broker, shareholder, 10)
         );
@@ -172,6 +180,7 @@ class SecurityTest {
     @Test
     void update_iceberg_order_price_leads_to_match_as_new_order() throws InvalidRequestException {
         security = Security.builder().isin("TEST").build();
+        securityRepository.addSecurity(security);
         shareholder.incPosition(security, 1_000);
         orders = List.of(
                 new Order(1, security, BUY, 15, 10, broker, shareholder),
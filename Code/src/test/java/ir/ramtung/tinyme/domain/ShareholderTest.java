@@ -0,0 +1,120 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.messaging.request.ChangeMatchingStateRq;
+import ir.ramtung.tinyme.messaging.request.MatchingState;
+import ir.ramtung.tinyme.repository.SecurityRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShareholderTest {
+    @Test
+    void positions_are_kept_per_security() {
+        SecurityRepository securityRepository = new SecurityRepository();
+        Shareholder shareholder = Shareholder.builder().shareholderId(1).build();
+        Security abc = Security.builder().isin("SHT-ABC").build();
+        Security bcd = Security.builder().isin("SHT-BCD").build();
+        securityRepository.addSecurity(abc);
+        securityRepository.addSecurity(bcd);
+        shareholder.incPosition(abc, 100);
+        shareholder.incPosition(bcd, 40);
+        shareholder.decPosition(abc, 30);
+
+        assertThat(shareholder.getPosition(abc)).isEqualTo(70);
+        assertThat(shareholder.getPosition(bcd)).isEqualTo(40);
+        assertThat(shareholder.hasEnoughPositionsOn(abc, 70)).isTrue();
+        assertThat(shareholder.hasEnoughPositionsOn(abc, 71)).isFalse();
+        assertThatThrownBy(() -> shareholder.decPosition(bcd, 41)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(shareholder.getPosition(Security.builder().isin("SHT-NONE").build())).isZero();
+    }
+
+    @Test
+    void positions_survive_switching_to_auction_and_back() {
+        Shareholder shareholder = Shareholder.builder().shareholderId(1).build();
+        Security security = Security.builder().isin("SHT-SWAP").build();
+        new SecurityRepository().addSecurity(security);
+        shareholder.incPosition(security, 500);
+
+        Security auction = security.changeTo(ChangeMatchingStateRq.createChangeMatchingState(1, "SHT-SWAP",
+                MatchingState.AUCTION)).getSecurity();
+        assertThat(auction).isInstanceOf(AuctionSecurity.class);
+        assertThat(shareholder.getPosition(auction)).isEqualTo(500);
+        shareholder.decPosition(auction, 200);
+
+        Security continuous = auction.changeTo(ChangeMatchingStateRq.createChangeMatchingState(2, "SHT-SWAP",
+                MatchingState.CONTINUOUS)).getSecurity();
+        assertThat(shareholder.getPosition(continuous)).isEqualTo(300);
+    }
+
+    @Test
+    void positions_need_a_security_added_to_a_repository() {
+        Shareholder shareholder = Shareholder.builder().shareholderId(1).build();
+        Security unlisted = Security.builder().isin("SHT-UNLISTED").build();
+
+        assertThatThrownBy(() -> shareholder.incPosition(unlisted, 100)).isInstanceOf(IllegalStateException.class);
+        assertThat(shareholder.getPosition(unlisted)).isZero();
+    }
+
+    @Test
+    void concurrent_updates_survive_the_positions_growing() throws Exception {
+        SecurityRepository securityRepository = new SecurityRepository();
+        int traders = 4;
+        List<Security> securities = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            Security security = Security.builder().isin("SHT-" + i).build();
+            securityRepository.addSecurity(security);
+            securities.add(security);
+        }
+        // each round a shareholder without positions is traded in by every trader while the securities past the
+        // traded ones grow its positions
+        Shareholder[] shareholders = new Shareholder[5_000];
+        for (int i = 0; i < shareholders.length; i++)
+            shareholders[i] = Shareholder.builder().shareholderId(i).build();
+        CyclicBarrier round = new CyclicBarrier(traders + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(traders + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < traders; t++) {
+                Security traded = securities.get(t);
+                futures.add(executor.submit(() -> {
+                    for (Shareholder shareholder : shareholders) {
+                        round.await();
+                        for (int i = 0; i < 50; i++) {
+                            shareholder.incPosition(traded, 2);
+                            shareholder.decPosition(traded, 1);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                for (Shareholder shareholder : shareholders) {
+                    round.await();
+                    for (int i = traders; i < securities.size(); i++)
+                        shareholder.incPosition(securities.get(i), 1);
+                }
+                return null;
+            }));
+            for (Future<?> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (Shareholder shareholder : shareholders) {
+            for (int t = 0; t < traders; t++)
+                assertThat(shareholder.getPosition(securities.get(t))).isEqualTo(50);
+            assertThat(shareholder.getPosition(securities.get(63))).isEqualTo(1);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.springframework.test.annotation.DirtiesContext;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -258,4 +259,24 @@ public class StopLimitTest {
 
 
 
+
+    @Test
+    void pops_only_the_stop_orders_triggered_by_the_price_nearest_trigger_first() {
+        StopLimitOrderBook stopLimitOrderBook = security.getStopLimitOrderBook();
+        StopLimitOrder buy1 = new StopLimitOrder(8, security, Side.BUY, 10, 500, broker3, shareholder, 0, 500);
+        StopLimitOrder buy2 = new StopLimitOrder(9, security, Side.BUY, 10, 500, broker3, shareholder, 0, 450);
+        StopLimitOrder buy3 = new StopLimitOrder(10, security, Side.BUY, 10, 500, broker3, shareholder, 0, 450);
+        StopLimitOrder sell1 = new StopLimitOrder(11, security, Side.SELL, 10, 300, broker3, shareholder, 0, 400);
+        StopLimitOrder sell2 = new StopLimitOrder(12, security, Side.SELL, 10, 300, broker3, shareholder, 0, 430);
+        List.of(buy1, buy2, buy3, sell1, sell2).forEach(stopLimitOrderBook::enqueue);
+
+        LinkedList<StopLimitOrder> activated = new LinkedList<>();
+        assertThat(stopLimitOrderBook.isTriggeredBy(440)).isFalse();
+        assertThat(stopLimitOrderBook.popActivatedOrders(460, activated)).isEqualTo(2);
+        assertThat(stopLimitOrderBook.popActivatedOrders(420, activated)).isEqualTo(1);
+        assertThat(activated).containsExactly(buy2, buy3, sell2);
+        assertThat(stopLimitOrderBook.findByOrderId(Side.BUY, 8)).isEqualTo(buy1);
+        assertThat(stopLimitOrderBook.findByOrderId(Side.BUY, 9)).isNull();
+        assertThat(stopLimitOrderBook.getSellQueue()).containsExactly(sell1);
+    }
 }
@@ -0,0 +1,114 @@
+package ir.ramtung.tinyme.journal;
+
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.messaging.request.ChangeMatchingStateRq;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.messaging.request.MatchingState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestJournalTest {
+    @TempDir
+    Path directory;
+
+    private List<Object> requests(int count) {
+        LocalDateTime entryTime = LocalDateTime.of(2024, 3, 1, 9, 30);
+        List<Object> requests = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            requests.add(switch (i % 3) {
+                case 0 -> EnterOrderRq.createNewOrderRq(i, "ABC", i, entryTime, Side.BUY, 100, 15000, 1, 1, 0);
+                case 1 -> new DeleteOrderRq(i, "ABC", Side.SELL, i, entryTime);
+                default -> ChangeMatchingStateRq.createChangeMatchingState(i, "ABC", MatchingState.AUCTION);
+            });
+        }
+        return requests;
+    }
+
+    private List<Object> replay(RequestJournal journal) {
+        List<Object> replayed = new ArrayList<>();
+        journal.replay(replayed::add);
+        return replayed;
+    }
+
+    @Test
+    void replays_requests_in_order_across_segments() throws IOException {
+        RequestJournal journal = new RequestJournal(directory.toString(), 1024, 0);
+        List<Object> requests = requests(100);
+        requests.forEach(journal::append);
+        journal.close();
+
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertThat(segments.count()).isGreaterThan(1);
+        }
+        RequestJournal reopened = new RequestJournal(directory.toString(), 1024, 0);
+        assertThat(replay(reopened)).isEqualTo(requests);
+        assertThat(reopened.lastSequence()).isEqualTo(100);
+    }
+
+    @Test
+    void stops_at_a_torn_record_and_appends_after_it() throws IOException {
+        RequestJournal journal = new RequestJournal(directory.toString(), 1 << 16, 0);
+        List<Object> requests = requests(3);
+        requests.forEach(journal::append);
+        journal.close();
+        Path segment;
+        try (Stream<Path> segments = Files.list(directory)) {
+            segment = segments.findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long lastRecord = 0;
+            for (int i = 0; i < 2; i++) {
+                file.seek(lastRecord);
+                lastRecord += RequestJournal.HEADER_SIZE + Integer.reverseBytes(file.readInt());
+            }
+            file.seek(lastRecord + RequestJournal.HEADER_SIZE);
+            file.writeByte(0x7f);
+        }
+
+        RequestJournal reopened = new RequestJournal(directory.toString(), 1 << 16, 0);
+        assertThat(replay(reopened)).isEqualTo(requests.subList(0, 2));
+        reopened.append(requests.get(2));
+        reopened.close();
+        assertThat(replay(new RequestJournal(directory.toString(), 1 << 16, 0))).isEqualTo(requests);
+    }
+
+    @Test
+    void replays_only_after_a_snapshot_once_covered_segments_are_discarded() throws IOException {
+        RequestJournal journal = new RequestJournal(directory.toString(), 1024, 0);
+        List<Object> requests = requests(100);
+        requests.forEach(journal::append);
+        long segmentsBefore;
+        try (Stream<Path> segments = Files.list(directory)) {
+            segmentsBefore = segments.count();
+        }
+        journal.discardThrough(50);
+        journal.close();
+
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertThat(segments.count()).isLessThan(segmentsBefore);
+        }
+        List<Object> replayed = new ArrayList<>();
+        new RequestJournal(directory.toString(), 1024, 0).replay(50, replayed::add);
+        assertThat(replayed).isEqualTo(requests.subList(50, 100));
+    }
+
+    @Test
+    void refuses_to_start_along_with_matching_shards() {
+        assertThatThrownBy(() -> new RequestJournal(directory.toString(), 1024, 0, 4))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(new RequestJournal("", 1024, 0, 4).isEnabled()).isFalse();
+    }
+}
@@ -0,0 +1,85 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.messaging.event.OrderAcceptedEvent;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AsyncEventPublisherTest {
+    @Test
+    void a_batch_the_broker_refuses_is_retried_until_it_is_sent() throws Exception {
+        Session session = mock(Session.class);
+        MessageProducer producer = mock(MessageProducer.class);
+        when(session.createProducer(any())).thenReturn(producer);
+        Connection connection = mock(Connection.class);
+        when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.createConnection())
+                .thenThrow(new JMSException("broker down"))
+                .thenThrow(new JMSException("broker down"))
+                .thenReturn(connection);
+        MessageConverter converter = mock(MessageConverter.class);
+        when(converter.toMessage(any(), any())).thenReturn(mock(TextMessage.class));
+
+        EventPublisher publisher = asyncPublisher(connectionFactory, converter);
+        publisher.publish(new OrderAcceptedEvent(1, 11));
+        publisher.publish(new OrderAcceptedEvent(2, 12));
+
+        verify(producer, timeout(2000).times(2)).send(any());
+        verify(session, timeout(2000).atLeastOnce()).commit();
+        verify(connectionFactory, atLeast(3)).createConnection();
+        publisher.stopPublishStage();
+    }
+
+    @Test
+    void an_event_that_cannot_be_sent_is_dropped_and_the_rest_of_its_batch_is_sent() throws Exception {
+        Session session = mock(Session.class);
+        MessageProducer producer = mock(MessageProducer.class);
+        when(session.createProducer(any())).thenReturn(producer);
+        Connection connection = mock(Connection.class);
+        when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        OrderAcceptedEvent broken = new OrderAcceptedEvent(2, 12);
+        TextMessage message = mock(TextMessage.class);
+        MessageConverter converter = mock(MessageConverter.class);
+        when(converter.toMessage(any(), any())).thenReturn(message);
+        when(converter.toMessage(eq(broken), any())).thenThrow(new NullPointerException("no converter state"));
+
+        EventPublisher publisher = asyncPublisher(connectionFactory, converter);
+        publisher.publish(new OrderAcceptedEvent(1, 11));
+        publisher.publish(broken);
+        publisher.publish(new OrderAcceptedEvent(3, 13));
+
+        verify(producer, timeout(2000).times(2)).send(message);
+        verify(session, timeout(2000).atLeastOnce()).commit();
+        verify(session, never()).rollback();
+        publisher.stopPublishStage();
+    }
+
+    private static EventPublisher asyncPublisher(ConnectionFactory connectionFactory, MessageConverter converter) {
+        JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+        jmsTemplate.setMessageConverter(converter);
+        EventPublisher publisher = new EventPublisher(jmsTemplate);
+        ReflectionTestUtils.setField(publisher, "responseQueue", "RS");
+        ReflectionTestUtils.setField(publisher, "asyncPublishing", true);
+        ReflectionTestUtils.setField(publisher, "queueSize", 16);
+        ReflectionTestUtils.setField(publisher, "batchSize", 8);
+        ReflectionTestUtils.setField(publisher, "waitStrategy", "park");
+        publisher.startPublishStage();
+        return publisher;
+    }
+}
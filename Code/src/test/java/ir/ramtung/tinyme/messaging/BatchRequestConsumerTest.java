@@ -0,0 +1,203 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.messaging.event.Event;
+import ir.ramtung.tinyme.messaging.event.OrderAcceptedEvent;
+import ir.ramtung.tinyme.messaging.event.OrderDeletedEvent;
+import ir.ramtung.tinyme.messaging.event.OrderRejectedEvent;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.UncategorizedJmsException;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class BatchRequestConsumerTest {
+    private Session session;
+    private MessageConsumer consumer;
+    private MessageConverter converter;
+    private OrderHandler orderHandler;
+    private EventPublisher eventPublisher;
+
+    @BeforeEach
+    void setup() {
+        session = mock(Session.class);
+        consumer = mock(MessageConsumer.class);
+        converter = mock(MessageConverter.class);
+        orderHandler = mock(OrderHandler.class);
+        eventPublisher = mock(EventPublisher.class);
+    }
+
+    private Message messageOf(Object request) throws JMSException {
+        Message message = mock(Message.class);
+        when(converter.fromMessage(message)).thenReturn(request);
+        return message;
+    }
+
+    private Message messageOf(Object request, String id, boolean redelivered) throws JMSException {
+        Message message = messageOf(request);
+        when(message.getJMSMessageID()).thenReturn(id);
+        when(message.getJMSRedelivered()).thenReturn(redelivered);
+        return message;
+    }
+
+    private void recordEventsOnBind(List<List<Event>> sinks) throws JMSException {
+        doAnswer(invocation -> sinks.add(invocation.getArgument(1))).when(eventPublisher).bindSession(any(), anyList());
+    }
+
+    private BatchRequestConsumer consumerWithBatchSize(int batchSize) {
+        return new BatchRequestConsumer(null, converter, orderHandler, new MatchingShards(0), eventPublisher,
+                batchSize, false);
+    }
+
+    @Test
+    void handles_a_batch_in_arrival_order_and_commits_once() throws JMSException {
+        EnterOrderRq first = EnterOrderRq.createNewOrderRq(1, "ABC", 10, LocalDateTime.now(), Side.BUY, 100, 15000, 1, 1, 0);
+        DeleteOrderRq second = new DeleteOrderRq(2, "ABC", Side.BUY, 10);
+        EnterOrderRq third = EnterOrderRq.createNewOrderRq(3, "ABC", 11, LocalDateTime.now(), Side.SELL, 100, 15000, 1, 1, 0);
+        Message m1 = messageOf(first), m2 = messageOf(second), m3 = messageOf(third);
+        when(consumer.receive(anyLong())).thenReturn(m1);
+        when(consumer.receiveNoWait()).thenReturn(m2, m3, null);
+
+        consumerWithBatchSize(10).consumeBatch(session, consumer);
+
+        InOrder inOrder = inOrder(eventPublisher, orderHandler, session);
+        inOrder.verify(eventPublisher).bindSession(eq(session), anyList());
+        inOrder.verify(orderHandler).handleEnterOrder(first);
+        inOrder.verify(orderHandler).handleDeleteOrder(second);
+        inOrder.verify(orderHandler).handleEnterOrder(third);
+        inOrder.verify(session).commit();
+        inOrder.verify(eventPublisher).unbindSession();
+        verify(session, never()).rollback();
+    }
+
+    @Test
+    void stops_draining_at_the_batch_size() throws JMSException {
+        DeleteOrderRq first = new DeleteOrderRq(1, "ABC", Side.BUY, 10);
+        DeleteOrderRq second = new DeleteOrderRq(2, "ABC", Side.BUY, 11);
+        Message m1 = messageOf(first), m2 = messageOf(second);
+        when(consumer.receive(anyLong())).thenReturn(m1);
+        when(consumer.receiveNoWait()).thenReturn(m2, m2);
+
+        consumerWithBatchSize(2).consumeBatch(session, consumer);
+
+        verify(consumer, times(1)).receiveNoWait();
+        verify(orderHandler).handleDeleteOrder(first);
+        verify(orderHandler).handleDeleteOrder(second);
+        verify(session, times(1)).commit();
+    }
+
+    @Test
+    void requests_of_a_rolled_back_batch_are_not_handled_again_but_their_events_are_resent() throws JMSException {
+        EnterOrderRq first = EnterOrderRq.createNewOrderRq(1, "ABC", 10, LocalDateTime.now(), Side.BUY, 100, 15000, 1, 1, 0);
+        DeleteOrderRq second = new DeleteOrderRq(2, "ABC", Side.BUY, 10);
+        Event accepted = new OrderAcceptedEvent(1, 10);
+        Event deleted = new OrderDeletedEvent(2, 10);
+        List<List<Event>> sinks = new ArrayList<>();
+        recordEventsOnBind(sinks);
+        doAnswer(invocation -> sinks.get(sinks.size() - 1).add(accepted)).when(orderHandler).handleEnterOrder(first);
+        doAnswer(invocation -> {
+            sinks.get(sinks.size() - 1).add(deleted);
+            throw new UncategorizedJmsException("broker gone");
+        }).when(orderHandler).handleDeleteOrder(second);
+        Message m1 = messageOf(first, "ID:1", false), m2 = messageOf(second, "ID:2", false);
+        when(consumer.receive(anyLong())).thenReturn(m1);
+        when(consumer.receiveNoWait()).thenReturn(m2);
+        BatchRequestConsumer batchConsumer = consumerWithBatchSize(10);
+
+        assertThatThrownBy(() -> batchConsumer.consumeBatch(session, consumer)).isInstanceOf(JmsException.class);
+        verify(session).rollback();
+
+        Message redelivered1 = messageOf(first, "ID:1", true), redelivered2 = messageOf(second, "ID:2", true);
+        when(consumer.receive(anyLong())).thenReturn(redelivered1);
+        when(consumer.receiveNoWait()).thenReturn(redelivered2, (Message) null);
+        batchConsumer.consumeBatch(session, consumer);
+
+        verify(orderHandler, times(1)).handleEnterOrder(first);
+        verify(orderHandler, times(1)).handleDeleteOrder(second);
+        InOrder inOrder = inOrder(eventPublisher);
+        inOrder.verify(eventPublisher).publish(accepted);
+        inOrder.verify(eventPublisher).publish(deleted);
+        verify(session).commit();
+    }
+
+    @Test
+    void a_redelivered_request_that_was_never_handled_is_handled() throws JMSException {
+        DeleteOrderRq request = new DeleteOrderRq(1, "ABC", Side.BUY, 10);
+        Message message = messageOf(request, "ID:1", true);
+        when(consumer.receive(anyLong())).thenReturn(message);
+        when(consumer.receiveNoWait()).thenReturn(null);
+
+        consumerWithBatchSize(10).consumeBatch(session, consumer);
+
+        verify(orderHandler).handleDeleteOrder(request);
+        verify(session).commit();
+    }
+
+    @Test
+    void a_sharded_batch_is_committed_only_after_its_requests_ran_on_their_shards() throws Exception {
+        DeleteOrderRq first = new DeleteOrderRq(1, "ABC", Side.BUY, 10);
+        DeleteOrderRq second = new DeleteOrderRq(2, "BCD", Side.BUY, 11);
+        Message m1 = messageOf(first), m2 = messageOf(second);
+        when(consumer.receive(anyLong())).thenReturn(m1);
+        when(consumer.receiveNoWait()).thenReturn(m2, (Message) null);
+        List<Thread> ranOn = new ArrayList<>();
+        doAnswer(invocation -> {
+            Thread.sleep(50);
+            synchronized (ranOn) {
+                ranOn.add(Thread.currentThread());
+            }
+            return null;
+        }).when(orderHandler).handleDeleteOrder(any());
+        MatchingShards shards = new MatchingShards(2);
+        BatchRequestConsumer batchConsumer = new BatchRequestConsumer(null, converter, orderHandler, shards,
+                eventPublisher, 10, false);
+
+        batchConsumer.consumeBatch(session, consumer);
+        shards.shutdown();
+
+        InOrder inOrder = inOrder(orderHandler, session);
+        inOrder.verify(orderHandler, times(2)).handleDeleteOrder(any());
+        inOrder.verify(session).commit();
+        assertThat(ranOn).hasSize(2).doesNotContain(Thread.currentThread());
+    }
+
+    @Test
+    void takes_over_from_the_listeners_when_matching_is_sharded_without_the_pipeline() {
+        assertThat(BatchRequestConsumer.effectiveBatchSize(0, 0, false)).isZero();
+        assertThat(BatchRequestConsumer.effectiveBatchSize(0, 4, false)).isEqualTo(BatchRequestConsumer.SHARDED_BATCH_SIZE);
+        assertThat(BatchRequestConsumer.effectiveBatchSize(0, 4, true)).isZero();
+        assertThat(BatchRequestConsumer.effectiveBatchSize(32, 4, false)).isEqualTo(32);
+    }
+
+    @Test
+    void a_request_that_fails_is_rejected_and_the_batch_goes_on() throws JMSException {
+        DeleteOrderRq first = new DeleteOrderRq(1, "ABC", Side.BUY, 10);
+        DeleteOrderRq second = new DeleteOrderRq(2, "ABC", Side.BUY, 11);
+        doThrow(new IllegalStateException("broken")).when(orderHandler).handleDeleteOrder(first);
+        Message m1 = messageOf(first), m2 = messageOf(second);
+        when(consumer.receive(anyLong())).thenReturn(m1);
+        when(consumer.receiveNoWait()).thenReturn(m2, (Message) null);
+
+        consumerWithBatchSize(10).consumeBatch(session, consumer);
+
+        verify(eventPublisher).publish(new OrderRejectedEvent(1, 10, List.of(ir.ramtung.tinyme.messaging.Message.REQUEST_FAILED)));
+        verify(orderHandler).handleDeleteOrder(second);
+        verify(session).commit();
+    }
+}
@@ -0,0 +1,58 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.messaging.event.*;
+import ir.ramtung.tinyme.messaging.request.ChangeMatchingStateRq;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.messaging.request.MatchingState;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryCodecTest {
+    private Object roundTrip(Object message) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        BinaryCodec.encode(message, buffer);
+        buffer.flip();
+        Object decoded = BinaryCodec.decode(buffer);
+        assertThat(buffer.hasRemaining()).isFalse();
+        return decoded;
+    }
+
+    @Test
+    void requests_survive_a_round_trip() {
+        LocalDateTime entryTime = LocalDateTime.of(2024, 3, 1, 9, 30, 15, 123_456_789);
+        EnterOrderRq enterOrderRq = EnterOrderRq.createUpdateStopLimitOrderRq(7, "ABC", 11, entryTime, Side.BUY,
+                300, 15450, 2, 3, 0, 0, 15500);
+        DeleteOrderRq deleteOrderRq = new DeleteOrderRq(8, "ABC", Side.SELL, 12, entryTime);
+        ChangeMatchingStateRq changeRq = ChangeMatchingStateRq.createChangeMatchingState(9, "ABC", MatchingState.AUCTION);
+
+        assertThat(roundTrip(enterOrderRq)).isEqualTo(enterOrderRq);
+        assertThat(roundTrip(deleteOrderRq)).isEqualTo(deleteOrderRq);
+        assertThat(roundTrip(changeRq)).isEqualTo(changeRq);
+    }
+
+    @Test
+    void events_survive_a_round_trip_with_their_time() {
+        List<Event> events = List.of(
+                new OrderAcceptedEvent(1, 11),
+                new OrderExecutedEvent(1, 11, List.of(new TradeDTO("ABC", 15450, 100, 11, 4),
+                        new TradeDTO("ABC", 15500, 20, 11, 5))),
+                new OrderRejectedEvent(2, 12, List.of(Message.UNKNOWN_SECURITY_ISIN, Message.INVALID_ORDER_ID)),
+                new TradeEvent("ABC", 15450, 100, 11, 4),
+                new OpeningPriceEvent("ABC", 15450, 1000),
+                new SecurityStateChangedEvent("ABC", MatchingState.CONTINUOUS)
+        );
+        for (Event event : events) {
+            Event decoded = (Event) roundTrip(event);
+            assertThat(decoded).isEqualTo(event);
+            assertThat(decoded.getTime()).isEqualTo(event.getTime());
+        }
+    }
+}
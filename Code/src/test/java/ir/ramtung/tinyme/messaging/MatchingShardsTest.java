@@ -0,0 +1,135 @@
+package ir.ramtung.tinyme.messaging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.UncategorizedJmsException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MatchingShardsTest {
+    @Test
+    void runs_on_the_calling_thread_when_there_are_no_shards() throws InterruptedException {
+        MatchingShards shards = new MatchingShards(0);
+        List<Thread> ranOn = new ArrayList<>();
+        Future<Void> request = shards.submit("ABC", () -> ranOn.add(Thread.currentThread()), ex -> {});
+        assertThat(request).isDone();
+        assertThat(ranOn).containsExactly(Thread.currentThread());
+        shards.shutdown();
+    }
+
+    @Test
+    void keeps_the_order_of_requests_of_each_security_on_one_thread() throws InterruptedException {
+        MatchingShards shards = new MatchingShards(4);
+        List<String> isins = List.of("ABC", "BCD", "CDE", "DEF", "EFG");
+        ConcurrentHashMap<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, Thread> threadOf = new ConcurrentHashMap<>();
+        List<String> threadMismatches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(isins.size() * 1000);
+        for (int i = 0; i < 1000; i++) {
+            for (String isin : isins) {
+                int sequence = i;
+                shards.submit(isin, () -> {
+                    seen.computeIfAbsent(isin, key -> new ArrayList<>()).add(sequence);
+                    if (threadOf.putIfAbsent(isin, Thread.currentThread()) != null
+                            && threadOf.get(isin) != Thread.currentThread())
+                        threadMismatches.add(isin);
+                    done.countDown();
+                }, ex -> {});
+            }
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        shards.shutdown();
+
+        assertThat(threadMismatches).isEmpty();
+        for (String isin : isins)
+            assertThat(seen.get(isin)).isSorted().hasSize(1000);
+    }
+
+    @Test
+    void submit_does_not_wait_for_the_request_but_awaiting_it_does() throws InterruptedException {
+        MatchingShards shards = new MatchingShards(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        Future<Void> request = shards.submit("ABC", () -> {
+            await(release);
+            ranOn.set(Thread.currentThread());
+        }, ex -> {});
+        assertThat(request).isNotDone();
+
+        release.countDown();
+        shards.awaitAll(List.of(request));
+        assertThat(ranOn.get()).isNotNull().isNotSameAs(Thread.currentThread());
+        shards.shutdown();
+    }
+
+    @Test
+    void a_failing_request_is_handed_to_its_failure_handler() throws InterruptedException {
+        MatchingShards shards = new MatchingShards(2);
+        List<RuntimeException> failures = new ArrayList<>();
+        shards.awaitAll(List.of(shards.submit("ABC", () -> {
+            throw new IllegalStateException("broken");
+        }, failures::add)));
+        assertThat(failures).singleElement().isInstanceOf(IllegalStateException.class);
+        shards.shutdown();
+    }
+
+    @Test
+    void a_messaging_error_is_rethrown_once_every_awaited_request_ran() throws InterruptedException {
+        MatchingShards shards = new MatchingShards(2);
+        AtomicBoolean laterRan = new AtomicBoolean();
+        Future<Void> failing = shards.submit("ABC", () -> {
+            throw new UncategorizedJmsException("broker gone");
+        }, ex -> {});
+        Future<Void> later = shards.submit("BCD", () -> {
+            sleep(50);
+            laterRan.set(true);
+        }, ex -> {});
+        assertThatThrownBy(() -> shards.awaitAll(List.of(failing, later))).isInstanceOf(JmsException.class);
+        assertThat(laterRan).isTrue();
+        shards.shutdown();
+    }
+
+    @Test
+    void a_full_mailbox_blocks_the_submitter() throws InterruptedException {
+        MatchingShards shards = new MatchingShards(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        shards.submit("ABC", () -> await(release), ex -> {});
+        shards.submit("ABC", () -> {}, ex -> {});
+        Thread submitter = new Thread(() -> shards.submit("ABC", () -> {}, ex -> {}));
+        submitter.start();
+        submitter.join(200);
+        assertThat(submitter.isAlive()).isTrue();
+
+        release.countDown();
+        submitter.join(1000);
+        assertThat(submitter.isAlive()).isFalse();
+        shards.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
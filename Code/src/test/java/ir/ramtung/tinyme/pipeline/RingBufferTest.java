@@ -0,0 +1,108 @@
+package ir.ramtung.tinyme.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferTest {
+    static final class Slot {
+        long value;
+        long doubled;
+    }
+
+    @Test
+    void a_chained_stage_sees_every_value_after_the_stage_it_follows() throws InterruptedException {
+        RingBuffer<Slot> ringBuffer = new RingBuffer<>(Slot::new, 64, WaitStrategy.named("yield"));
+        BatchProcessor<Slot> doubler = new BatchProcessor<>(ringBuffer, ringBuffer.newBarrier(),
+                (slot, sequence, endOfBatch) -> slot.doubled = slot.value * 2);
+        List<Long> seen = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(10_000);
+        BatchProcessor<Slot> collector = new BatchProcessor<>(ringBuffer, ringBuffer.newBarrier(doubler.getSequence()),
+                (slot, sequence, endOfBatch) -> {
+                    seen.add(slot.doubled);
+                    done.countDown();
+                });
+        ringBuffer.addGatingSequences(collector.getSequence());
+        new Thread(doubler).start();
+        new Thread(collector).start();
+
+        for (long i = 0; i < 10_000; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).value = i;
+            ringBuffer.publish(sequence);
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        doubler.halt();
+        collector.halt();
+        assertThat(seen).hasSize(10_000);
+        for (int i = 0; i < seen.size(); i++)
+            assertThat(seen.get(i)).isEqualTo(2L * i);
+    }
+
+    @Test
+    void concurrent_producers_never_lose_or_overwrite_a_slot() throws InterruptedException {
+        RingBuffer<Slot> ringBuffer = new RingBuffer<>(Slot::new, 16, WaitStrategy.named("park"));
+        boolean[] seen = new boolean[4 * 5_000];
+        CountDownLatch done = new CountDownLatch(seen.length);
+        BatchProcessor<Slot> consumer = new BatchProcessor<>(ringBuffer, ringBuffer.newBarrier(),
+                (slot, sequence, endOfBatch) -> {
+                    seen[(int) slot.value] = true;
+                    done.countDown();
+                });
+        ringBuffer.addGatingSequences(consumer.getSequence());
+        new Thread(consumer).start();
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int first = p * 5_000;
+            producers.add(new Thread(() -> {
+                for (int i = first; i < first + 5_000; i++) {
+                    long sequence = ringBuffer.next();
+                    ringBuffer.get(sequence).value = i;
+                    ringBuffer.publish(sequence);
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        consumer.halt();
+        for (boolean value : seen)
+            assertThat(value).isTrue();
+    }
+
+    @Test
+    void batches_are_capped_and_lingering_lets_a_short_batch_fill() throws InterruptedException {
+        RingBuffer<Slot> ringBuffer = new RingBuffer<>(Slot::new, 64, WaitStrategy.named("busy-spin"));
+        List<Integer> batchSizes = new ArrayList<>();
+        int[] current = {0};
+        CountDownLatch done = new CountDownLatch(20);
+        BatchProcessor<Slot> consumer = new BatchProcessor<Slot>(ringBuffer, ringBuffer.newBarrier(),
+                (slot, sequence, endOfBatch) -> {
+                    current[0]++;
+                    if (endOfBatch) {
+                        batchSizes.add(current[0]);
+                        current[0] = 0;
+                    }
+                    done.countDown();
+                }).batching(8, TimeUnit.MILLISECONDS.toNanos(500));
+        ringBuffer.addGatingSequences(consumer.getSequence());
+        new Thread(consumer).start();
+
+        for (int i = 0; i < 20; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).value = i;
+            ringBuffer.publish(sequence);
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        consumer.halt();
+        assertThat(batchSizes).containsExactly(8, 8, 4);
+    }
+}
@@ -0,0 +1,94 @@
+package ir.ramtung.tinyme.repository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes a consistent set of large synthetic persistence files (brokers, shareholders, securities, positions and an
+ * uncrossed order book) for measuring startup. Load them by starting the application with
+ * {@code --persistenceLocation=file:<directory>}.
+ * <p>
+ * Usage: {@code PersistenceDataGenerator <directory> [orders] [securities] [shareholders] [brokers]}
+ */
+public class PersistenceDataGenerator {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: PersistenceDataGenerator <directory> [orders] [securities] [shareholders] [brokers]");
+            System.exit(1);
+        }
+        Path directory = Paths.get(args[0]);
+        int orders = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int securities = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int shareholders = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+        int brokers = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        long start = System.nanoTime();
+        generate(directory, orders, securities, shareholders, brokers, new Random(42));
+        System.out.printf("Wrote %d orders on %d securities to %s in %d ms%n", orders, securities, directory,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    static void generate(Path directory, int orders, int securities, int shareholders, int brokers, Random random)
+            throws IOException {
+        Files.createDirectories(directory);
+        try (PrintWriter writer = writer(directory, "broker.csv")) {
+            writer.println("brokerId,name,credit");
+            for (int i = 1; i <= brokers; i++)
+                writer.println(i + ",broker" + i + "," + Long.MAX_VALUE / 4);
+        }
+        try (PrintWriter writer = writer(directory, "shareholder.csv")) {
+            writer.println("shareholderId,name");
+            for (int i = 1; i <= shareholders; i++)
+                writer.println(i + ",shareholder" + i);
+        }
+        int[] midPrices = new int[securities];
+        try (PrintWriter writer = writer(directory, "security.csv")) {
+            writer.println("isin,tickSize,lotSize");
+            for (int i = 0; i < securities; i++) {
+                midPrices[i] = 10_000 + random.nextInt(10_000);
+                writer.println(isin(i) + ",1,1");
+            }
+        }
+
+        Map<String, Long> soldQuantities = new HashMap<>();
+        LocalDateTime entryTime = LocalDateTime.of(2024, 1, 1, 9, 0);
+        try (PrintWriter writer = writer(directory, "orderbook.csv")) {
+            writer.println("orderId,isin,side,quantity,price,brokerId,shareholderId,entryTime,peakSize,displayedQuantity");
+            for (int orderId = 1; orderId <= orders; orderId++) {
+                int security = random.nextInt(securities);
+                boolean buy = random.nextBoolean();
+                int distance = 1 + random.nextInt(500);
+                int price = buy ? midPrices[security] - distance : midPrices[security] + distance;
+                int quantity = 10 * (1 + random.nextInt(100));
+                int shareholder = 1 + random.nextInt(shareholders);
+                int peakSize = random.nextInt(20) == 0 ? quantity / 10 : 0;
+                entryTime = entryTime.plusNanos(1_000_000L + random.nextInt(1_000_000));
+                writer.println(orderId + "," + isin(security) + "," + (buy ? "BUY" : "SELL") + "," + quantity + ","
+                        + price + "," + (1 + random.nextInt(brokers)) + "," + shareholder + "," + entryTime + ","
+                        + peakSize + "," + peakSize);
+                if (!buy)
+                    soldQuantities.merge(shareholder + "," + isin(security), (long) quantity, Long::sum);
+            }
+        }
+        try (PrintWriter writer = writer(directory, "position.csv")) {
+            writer.println("shareholderId,isin,positions");
+            for (Map.Entry<String, Long> sold : soldQuantities.entrySet())
+                writer.println(sold.getKey() + "," + 2 * sold.getValue());
+        }
+    }
+
+    private static String isin(int security) {
+        return String.format("SEC%05d", security);
+    }
+
+    private static PrintWriter writer(Path directory, String name) throws IOException {
+        return new PrintWriter(new BufferedWriter(Files.newBufferedWriter(directory.resolve(name)), 1 << 16));
+    }
+}
@@ -0,0 +1,59 @@
+package ir.ramtung.tinyme.repository;
+
+import ir.ramtung.tinyme.domain.entity.AuctionSecurity;
+import ir.ramtung.tinyme.domain.entity.Security;
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecurityRepositoryTest {
+    @Test
+    void finds_securities_by_their_dense_id_and_keeps_the_id_across_replacement() {
+        SecurityDirectory directory = new SecurityDirectory();
+        SecurityRepository securityRepository = new SecurityRepository(directory);
+        Security security = Security.builder().isin("SRT1").build();
+        securityRepository.addSecurity(security);
+        int securityId = directory.find("SRT1");
+
+        assertThat(securityId).isNotEqualTo(Security.NO_ID);
+        assertThat(security.getId()).isEqualTo(securityId);
+        assertThat(securityRepository.findSecurityById(securityId)).isSameAs(security);
+        Security auction = AuctionSecurity.builder().isin("SRT1").build();
+        securityRepository.replace(auction);
+        assertThat(directory.find("SRT1")).isEqualTo(securityId);
+        assertThat(auction.getId()).isEqualTo(securityId);
+        assertThat(auction.getHolders()).isSameAs(security.getHolders());
+        assertThat(securityRepository.findSecurityByIsin("SRT1")).isSameAs(auction);
+    }
+
+    @Test
+    void does_not_assign_ids_to_unknown_isins() {
+        SecurityDirectory directory = new SecurityDirectory();
+        SecurityRepository securityRepository = new SecurityRepository(directory);
+        DeleteOrderRq request = new DeleteOrderRq(1, "SRT-UNKNOWN", Side.BUY, 1);
+        assertThat(securityRepository.findSecurityByIsin("SRT-UNKNOWN")).isNull();
+        assertThat(securityRepository.resolve(request)).isEqualTo(Security.NO_ID);
+        securityRepository.replace(Security.builder().isin("SRT-UNKNOWN").build());
+        assertThat(securityRepository.findSecurityByIsin("SRT-UNKNOWN")).isNull();
+        assertThat(directory.size()).isZero();
+    }
+
+    @Test
+    void clearing_starts_the_ids_over() {
+        SecurityDirectory directory = new SecurityDirectory();
+        SecurityRepository securityRepository = new SecurityRepository(directory);
+        securityRepository.addSecurity(Security.builder().isin("SRT1").build());
+        securityRepository.addSecurity(Security.builder().isin("SRT2").build());
+
+        securityRepository.clear();
+        Security reloaded = Security.builder().isin("SRT2").build();
+        securityRepository.addSecurity(reloaded);
+
+        assertThat(directory.size()).isEqualTo(1);
+        assertThat(reloaded.getId()).isZero();
+        assertThat(securityRepository.findSecurityByIsin("SRT1")).isNull();
+        assertThat(securityRepository.resolve(new DeleteOrderRq(1, "SRT2", Side.BUY, 1))).isZero();
+    }
+}
@@ -0,0 +1,131 @@
+package ir.ramtung.tinyme.repository;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotCodecTest {
+    private static final String[] NON_STATE_FIELDS = {"security", "level", "previous", "next", "shareholder.positions"};
+
+    @Test
+    void restores_the_engine_state_as_it_was() {
+        BrokerRepository brokers = new BrokerRepository();
+        ShareholderRepository shareholders = new ShareholderRepository();
+        SecurityRepository securities = new SecurityRepository();
+        Broker broker = Broker.builder().brokerId(1).name("broker").credit(100_000_000L).build();
+        broker.reserveCredit(1_000);
+        brokers.addBroker(broker);
+        Shareholder shareholder = Shareholder.builder().shareholderId(2).name("holder").build();
+        shareholders.addShareholder(shareholder);
+        Security security = Security.builder().isin("ABC").tickSize(5).lotSize(10).price(15_000).build();
+        Security auction = AuctionSecurity.builder().isin("BCD").build();
+        securities.addSecurity(security);
+        securities.addSecurity(auction);
+        shareholder.incPosition(security, 5_000);
+        shareholder.incPosition(auction, 300);
+
+        LocalDateTime time = LocalDateTime.of(2024, 3, 1, 9, 30, 0, 123_000);
+        security.getOrderBook().enqueue(new Order(1, security, Side.BUY, 300, 15_400, broker, shareholder, time));
+        security.getOrderBook().enqueue(new Order(2, security, Side.BUY, 200, 15_450, broker, shareholder, time, 50));
+        IcebergOrder iceberg = new IcebergOrder(3, security, Side.SELL, 1_000, 15_600, broker, shareholder, time, 200);
+        security.getOrderBook().enqueue(iceberg);
+        iceberg.decreaseQuantity(150);
+        security.getStopLimitOrderBook().enqueue(new StopLimitOrder(4, security, Side.BUY, 100, 15_800, broker,
+                shareholder, time, 0, 15_700, 44));
+        auction.getOrderBook().enqueue(new Order(5, auction, Side.SELL, 50, 900, broker, shareholder, time));
+        auction.getOrderBook().calculateOpeningPrice(auction.getPrice());
+
+        ByteBuffer brokersPart = SnapshotCodec.encodeBrokers(brokers.allBrokers());
+        ByteBuffer shareholdersPart = SnapshotCodec.encodeShareholders(shareholders.allShareholders());
+        List<ByteBuffer> securityParts = List.of(
+                SnapshotCodec.encodeSecurity(SnapshotCodec.imageOf(security)),
+                SnapshotCodec.encodeSecurity(SnapshotCodec.imageOf(auction)));
+        assertThat(SnapshotCodec.isIntact(brokersPart)).isTrue();
+
+        BrokerRepository restoredBrokers = new BrokerRepository();
+        ShareholderRepository restoredShareholders = new ShareholderRepository();
+        SecurityRepository restoredSecurities = new SecurityRepository();
+        SnapshotCodec.decodeBrokers(brokersPart, restoredBrokers);
+        SnapshotCodec.decodeShareholders(shareholdersPart, restoredShareholders);
+        for (ByteBuffer part : securityParts)
+            SnapshotCodec.decodeSecurity(part, restoredBrokers, restoredShareholders, restoredSecurities);
+
+        Broker restoredBroker = restoredBrokers.findBrokerById(1);
+        assertThat(restoredBroker.getCredit()).isEqualTo(broker.getCredit());
+        assertThat(restoredBroker.getReservedCredit()).isEqualTo(1_000);
+        assertThat(restoredBroker.getName()).isEqualTo("broker");
+        for (String isin : List.of("ABC", "BCD")) {
+            Security original = securities.findSecurityByIsin(isin);
+            Security restored = restoredSecurities.findSecurityByIsin(isin);
+            assertThat(restored.getClass()).isEqualTo(original.getClass());
+            assertThat(restored).usingRecursiveComparison()
+                    .comparingOnlyFields("isin", "tickSize", "lotSize", "price").isEqualTo(original);
+            assertThat(restored.getOrderBook().getBuyQueue())
+                    .usingRecursiveFieldByFieldElementComparatorIgnoringFields(NON_STATE_FIELDS)
+                    .containsExactlyElementsOf(original.getOrderBook().getBuyQueue());
+            assertThat(restored.getOrderBook().getSellQueue())
+                    .usingRecursiveFieldByFieldElementComparatorIgnoringFields(NON_STATE_FIELDS)
+                    .containsExactlyElementsOf(original.getOrderBook().getSellQueue());
+            assertThat(restored.getStopLimitOrderBook().getBuyQueue())
+                    .usingRecursiveFieldByFieldElementComparatorIgnoringFields(NON_STATE_FIELDS)
+                    .containsExactlyElementsOf(original.getStopLimitOrderBook().getBuyQueue());
+            assertThat(restored.getOrderBook().getOpeningPrice()).isEqualTo(original.getOrderBook().getOpeningPrice());
+            assertThat(restored.getOrderBook().getTradableQuantity()).isEqualTo(original.getOrderBook().getTradableQuantity());
+        }
+        Shareholder restoredShareholder = restoredShareholders.findShareholderById(2);
+        assertThat(restoredShareholder.getPosition(restoredSecurities.findSecurityByIsin("ABC"))).isEqualTo(5_000);
+        assertThat(restoredShareholder.getPosition(restoredSecurities.findSecurityByIsin("BCD"))).isEqualTo(300);
+        assertThat(restoredSecurities.findSecurityByIsin("ABC").getOrderBook().findByOrderId(Side.SELL, 3)
+                .getSecurity()).isSameAs(restoredSecurities.findSecurityByIsin("ABC"));
+    }
+
+    @Test
+    void an_image_keeps_the_state_it_was_taken_in() {
+        Broker broker = Broker.builder().brokerId(1).name("broker").credit(100_000_000L).build();
+        Shareholder shareholder = Shareholder.builder().shareholderId(2).name("holder").build();
+        Security security = Security.builder().isin("CDE").build();
+        new SecurityRepository().addSecurity(security);
+        shareholder.incPosition(security, 700);
+        Order order = new Order(1, security, Side.BUY, 300, 15_400, broker, shareholder, LocalDateTime.now());
+        security.getOrderBook().enqueue(order);
+        SnapshotCodec.SecurityImage image = SnapshotCodec.imageOf(security);
+
+        order.decreaseQuantity(100);
+        shareholder.decPosition(security, 200);
+        security.getOrderBook().enqueue(new Order(2, security, Side.BUY, 100, 15_300, broker, shareholder));
+
+        BrokerRepository brokers = new BrokerRepository();
+        brokers.addBroker(broker);
+        ShareholderRepository shareholders = new ShareholderRepository();
+        Shareholder restoredShareholder = Shareholder.builder().shareholderId(2).name("holder").build();
+        shareholders.addShareholder(restoredShareholder);
+        Security restored = SnapshotCodec.decodeSecurity(SnapshotCodec.encodeSecurity(image), brokers, shareholders,
+                new SecurityRepository());
+        assertThat(restored.getOrderBook().getBuyQueue()).hasSize(1);
+        assertThat(restored.getOrderBook().getBuyQueue().get(0).getQuantity()).isEqualTo(300);
+        assertThat(restoredShareholder.getPosition(restored)).isEqualTo(700);
+    }
+
+    @Test
+    void restores_the_manifest() {
+        SnapshotCodec.Manifest manifest = new SnapshotCodec.Manifest(77, 3,
+                Map.of("brokers", 3L, "shareholders", 1L, "security-ABC", 2L));
+        assertThat(SnapshotCodec.decodeManifest(SnapshotCodec.encodeManifest(manifest))).isEqualTo(manifest);
+    }
+
+    @Test
+    void detects_a_damaged_part() {
+        ByteBuffer part = SnapshotCodec.encodeBrokers(List.of(Broker.builder().brokerId(1).name("broker").build()));
+        part.put(8, (byte) (part.get(8) + 1));
+        assertThat(SnapshotCodec.isIntact(part)).isFalse();
+        assertThatThrownBy(() -> SnapshotCodec.decodeBrokers(part, new BrokerRepository()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
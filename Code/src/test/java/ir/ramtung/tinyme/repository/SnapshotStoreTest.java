@@ -0,0 +1,96 @@
+package ir.ramtung.tinyme.repository;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.journal.RequestJournal;
+import ir.ramtung.tinyme.messaging.EventPublisher;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SnapshotStoreTest {
+    @TempDir
+    Path directory;
+    private BrokerRepository brokerRepository;
+    private ShareholderRepository shareholderRepository;
+    private SecurityRepository securityRepository;
+    private Broker broker;
+    private Shareholder shareholder;
+
+    @BeforeEach
+    void setup() {
+        brokerRepository = new BrokerRepository();
+        shareholderRepository = new ShareholderRepository();
+        securityRepository = new SecurityRepository();
+        broker = Broker.builder().brokerId(1).name("broker").credit(100_000_000L).build();
+        brokerRepository.addBroker(broker);
+        shareholder = Shareholder.builder().shareholderId(1).name("holder").build();
+        shareholderRepository.addShareholder(shareholder);
+        securityRepository.addSecurity(Security.builder().isin("ABC").build());
+        securityRepository.addSecurity(Security.builder().isin("BCD").build());
+    }
+
+    private SnapshotStore store(BrokerRepository brokers, ShareholderRepository shareholders,
+                                SecurityRepository securities) {
+        OrderHandler orderHandler = new OrderHandler(securities, brokers, shareholders, mock(EventPublisher.class),
+                new Matcher());
+        return new SnapshotStore(brokers, shareholders, securities, orderHandler, RequestJournal.disabled(),
+                directory.toString(), 0);
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).toList();
+        }
+    }
+
+    @Test
+    void rewrites_only_the_parts_of_changed_securities() throws IOException {
+        SnapshotStore store = store(brokerRepository, shareholderRepository, securityRepository);
+        store.takeSnapshot();
+        Security security = securityRepository.findSecurityByIsin("ABC");
+        security.getOrderBook().enqueue(new Order(1, security, Side.BUY, 300, 15_400, broker, shareholder,
+                LocalDateTime.of(2024, 3, 1, 9, 30)));
+        securityRepository.markChanged("ABC");
+        store.takeSnapshot();
+
+        assertThat(files()).containsExactlyInAnyOrder("manifest", "brokers-2.part", "shareholders-1.part",
+                "security-ABC-2.part", "security-BCD-1.part");
+        SecurityRepository restoredSecurities = new SecurityRepository();
+        long sequence = store(new BrokerRepository(), new ShareholderRepository(), restoredSecurities).loadLatest();
+        assertThat(sequence).isEqualTo(0);
+        assertThat(restoredSecurities.findSecurityByIsin("ABC").getOrderBook().findByOrderId(Side.BUY, 1)).isNotNull();
+        assertThat(restoredSecurities.findSecurityByIsin("BCD")).isNotNull();
+    }
+
+    @Test
+    void finds_no_snapshot_in_an_empty_directory() throws IOException {
+        assertThat(store(brokerRepository, shareholderRepository, securityRepository).loadLatest()).isEqualTo(-1);
+    }
+
+    @Test
+    void requests_mark_their_security_changed_only_while_snapshots_are_enabled() {
+        DeleteOrderRq request = new DeleteOrderRq(1, "ABC", Side.BUY, 10);
+        OrderHandler orderHandler = new OrderHandler(securityRepository, brokerRepository, shareholderRepository,
+                mock(EventPublisher.class), new Matcher());
+        orderHandler.handleDeleteOrder(request);
+        assertThat(securityRepository.drainChanged()).isEmpty();
+
+        new SnapshotStore(brokerRepository, shareholderRepository, securityRepository, orderHandler,
+                RequestJournal.disabled(), directory.toString(), 0);
+        orderHandler.handleDeleteOrder(request);
+        assertThat(securityRepository.drainChanged()).containsExactly("ABC");
+    }
+}
@@ -0,0 +1,52 @@
+package ir.ramtung.tinyme.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongObjectHashMapTest {
+    @Test
+    void finds_what_was_put() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        map.put(1, "one");
+        map.put(0, "zero");
+        map.put(-7, "minus seven");
+        assertThat(map.get(1)).isEqualTo("one");
+        assertThat(map.get(0)).isEqualTo("zero");
+        assertThat(map.get(-7)).isEqualTo("minus seven");
+        assertThat(map.get(2)).isNull();
+        assertThat(map.size()).isEqualTo(3);
+    }
+
+    @Test
+    void put_replaces_previous_value() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        map.put(5, "old");
+        assertThat(map.put(5, "new")).isEqualTo("old");
+        assertThat(map.get(5)).isEqualTo("new");
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void keeps_colliding_keys_reachable_after_removals() {
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        HashMap<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                map.put(key, key);
+                expected.put(key, key);
+            } else {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 0; key < 2_000; key++)
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        assertThat(map).containsExactlyInAnyOrderElementsOf(expected.values());
+    }
+}